@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.broadcast.RedisCacheChannel;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.l1.CaffeineCacheProvider;
+import cn.elmi.components.cache.l1.GuavaCacheProvider;
+import cn.elmi.components.cache.l1.NullCacheProvider;
+import cn.elmi.components.cache.model.CacheElement;
+import cn.elmi.components.cache.utils.ApplicationContextUtil;
+import cn.elmi.components.cache.utils.CacheManager;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 缓存通道在一级缓存命中时的开销，l1Get 为直接读取一级缓存的基线；不需要 redis，二级缓存使用 none
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ChannelBenchmark {
+
+    private static final String REGION = "benchmark";
+    private static final int KEYS = 1024;
+
+    private AnnotationConfigApplicationContext context;
+    private RedisCacheChannel channel;
+    private Cache<Long, String> l1;
+
+    @Setup
+    public void setup() {
+        CacheProp cacheProp = new CacheProp();
+        cacheProp.setRegions(Collections.singletonMap("default", "maximumSize=10000,expireAfterAccess=30m"));
+        channel = new RedisCacheChannel();
+
+        // 只创建一级缓存相关的 bean，通道不执行 init，不会连接 redis
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("cacheProp", cacheProp);
+        context.getBeanFactory().registerSingleton("jedisPool", new JedisPool("localhost"));
+        context.getBeanFactory().registerSingleton("ehcache", new NullCacheProvider());
+        context.getBeanFactory().registerSingleton("redis", new NullCacheProvider());
+        context.getBeanFactory().registerSingleton("cacheChannel", channel);
+        context.register(ApplicationContextUtil.class, GuavaCacheProvider.class, CaffeineCacheProvider.class,
+                NullCacheProvider.class, CacheManager.class);
+        context.refresh();
+        context.getAutowireCapableBeanFactory().autowireBean(channel);
+
+        l1 = context.getBean(CacheManager.class).getCache(RedisCacheChannel.L1, REGION);
+        for (long i = 0; i < KEYS; i++) {
+            l1.put(i, "value-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        long index;
+
+        long next() {
+            return index++ & (KEYS - 1);
+        }
+    }
+
+    @Benchmark
+    public CacheElement<Long, String> channelGet(Cursor cursor) {
+        return channel.get(REGION, cursor.next());
+    }
+
+    @Benchmark
+    public String l1Get(Cursor cursor) {
+        return l1.getValue(cursor.next());
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.elmi.components.cache.model.Command;
+import cn.elmi.components.cache.serializer.JavaSerializer;
+
+/**
+ * 广播命令的编解码，toBuffers/parse 为旧格式，toBinary/decode 为二进制格式
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class CommandBenchmark {
+
+    /**
+     * long：单个数值 key，string：单个字符串 key，batch：批量失效的 100 个 key
+     */
+    @Param({ "long", "string", "batch" })
+    private String key;
+
+    private Command<Object> command;
+    private byte[] buffers;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        Command.setSerializer(new JavaSerializer());
+        Object k;
+        switch (key) {
+            case "string":
+                k = "user:20180101000001";
+                break;
+            case "batch":
+                ArrayList<Long> keys = new ArrayList<>();
+                for (long i = 0; i < 100; i++) {
+                    keys.add(20180101000001L + i);
+                }
+                k = keys;
+                break;
+            default:
+                k = 20180101000001L;
+        }
+        command = new Command<>(Command.OPT_DELETE_KEY, "orders", k);
+        buffers = command.toBuffers();
+        binary = command.toBinary();
+    }
+
+    @Benchmark
+    public byte[] toBuffers() {
+        return command.toBuffers();
+    }
+
+    @Benchmark
+    public Command<Object> parse() {
+        return Command.parse(buffers);
+    }
+
+    @Benchmark
+    public byte[] toBinary() {
+        return command.toBinary();
+    }
+
+    @Benchmark
+    public Command<Object> decode() {
+        return Command.decode(binary);
+    }
+
+}
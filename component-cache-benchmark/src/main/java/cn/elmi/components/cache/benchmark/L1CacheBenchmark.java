@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.CacheBuilder;
+
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.l1.CaffeineCache;
+import cn.elmi.components.cache.l1.GuavaCache;
+
+/**
+ * 一级缓存 guava 与 caffeine 在倾斜（zipf）访问下的吞吐量与命中率对比；readWrite 组为 3 个读线程与 1 个写线程竞争同一缓存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class L1CacheBenchmark {
+
+    private static final int ITEMS = 1 << 16;
+    private static final int SAMPLES = 1 << 20;
+    private static final int MASK = SAMPLES - 1;
+
+    @Param({ "guava", "caffeine" })
+    private String provider;
+
+    @Param({ "maximumSize=2000" })
+    private String spec;
+
+    private Cache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup
+    public void setup() {
+        cache = "caffeine".equals(provider)
+                ? new CaffeineCache<>("benchmark", Caffeine.from(spec).<Integer, Integer> build())
+                : new GuavaCache<>("benchmark", CacheBuilder.from(spec).<Integer, Integer> build());
+        keys = zipf(ITEMS, SAMPLES, 1.0, new Random(7));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = new Random().nextInt(SAMPLES);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Hits {
+        public long hit;
+        public long miss;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hit = 0;
+            miss = 0;
+        }
+    }
+
+    @Benchmark
+    public Integer getOrPut(Cursor cursor, Hits hits) {
+        Integer key = keys[cursor.index++ & MASK];
+        Integer value = cache.getValue(key);
+        if (value == null) {
+            hits.miss++;
+            cache.put(key, key);
+            return key;
+        }
+        hits.hit++;
+        return value;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public Integer read(Cursor cursor) {
+        return cache.getValue(keys[cursor.index++ & MASK]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void write(Cursor cursor) {
+        Integer key = keys[cursor.index++ & MASK];
+        cache.put(key, key);
+    }
+
+    /**
+     * 按 zipf 分布生成访问序列
+     */
+    static Integer[] zipf(int items, int samples, double exponent, Random random) {
+        double[] cdf = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+
+        Integer[] keys = new Integer[samples];
+        for (int i = 0; i < samples; i++) {
+            double u = random.nextDouble() * sum;
+            int lo = 0;
+            int hi = items - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cdf[mid] < u) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            keys[i] = lo;
+        }
+        return keys;
+    }
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.serializer.FstSerializer;
+import cn.elmi.components.cache.serializer.JavaSerializer;
+import cn.elmi.components.cache.serializer.KryoSerializer;
+import cn.elmi.components.cache.serializer.Serializer;
+import cn.elmi.components.cache.serializer.TaggedSerializer;
+import de.ruedigermoeller.serialization.FSTObjectInput;
+import de.ruedigermoeller.serialization.FSTObjectOutput;
+
+/**
+ * 序列化方式的延迟对比，fst-legacy 为每次新建流的原实现，tagged 为 fst 之前加上类型标记编码；配合 -prof gc 查看每次操作分配的内存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+
+    @Param({ "fst-legacy", "fst", "java", "kryo", "tagged" })
+    private String serializer;
+
+    /**
+     * key：Long 类型的 key，order：典型的缓存值，orders：100 个值的列表，graph：带回引用的大对象图
+     */
+    @Param({ "key", "order", "orders", "graph" })
+    private String payload;
+
+    private Serializer impl;
+    private Object value;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (serializer) {
+            case "fst-legacy":
+                impl = new LegacyFstSerializer();
+                break;
+            case "fst":
+                impl = new FstSerializer();
+                break;
+            case "kryo":
+                impl = new KryoSerializer(new CacheProp.KryoProp());
+                break;
+            case "tagged":
+                impl = new TaggedSerializer(new FstSerializer());
+                break;
+            default:
+                impl = new JavaSerializer();
+        }
+        switch (payload) {
+            case "key":
+                value = 20180101000001L;
+                break;
+            case "orders":
+                ArrayList<Order> orders = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    orders.add(Order.sample());
+                }
+                value = orders;
+                break;
+            case "graph":
+                value = Category.tree(4, 5);
+                break;
+            default:
+                value = Order.sample();
+        }
+        bytes = impl.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return impl.serialize(value);
+    }
+
+    /**
+     * 每个线程反序列化自己的副本：kryo 读取字符串时会临时修改输入数组
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        byte[] bytes;
+
+        @Setup
+        public void setup(SerializerBenchmark benchmark) {
+            bytes = benchmark.bytes.clone();
+        }
+    }
+
+    @Benchmark
+    public Object deserialize(Input input) throws IOException {
+        return impl.deserialize(input.bytes);
+    }
+
+    /**
+     * 典型的缓存值
+     */
+    public static class Order implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long id;
+        private String customer;
+        private int status;
+        private long createdAt;
+        private List<String> items;
+
+        static Order sample() {
+            Order order = new Order();
+            order.id = 20180101000001L;
+            order.customer = "customer-0001";
+            order.status = 3;
+            order.createdAt = 1514736000000L;
+            order.items = new ArrayList<>(Arrays.asList("sku-1001", "sku-1002", "sku-1003", "sku-1004"));
+            return order;
+        }
+    }
+
+    /**
+     * 对象图：子节点引用父节点，每个节点带若干商品
+     */
+    public static class Category implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+        private Category parent;
+        private List<Category> children = new ArrayList<>();
+        private List<Order> orders = new ArrayList<>();
+
+        static Category tree(int depth, int width) {
+            Category root = new Category();
+            root.name = "root";
+            grow(root, depth, width);
+            return root;
+        }
+
+        private static void grow(Category node, int depth, int width) {
+            node.orders.add(Order.sample());
+            if (depth == 0) {
+                return;
+            }
+            for (int i = 0; i < width; i++) {
+                Category child = new Category();
+                child.name = node.name + "/" + i;
+                child.parent = node;
+                node.children.add(child);
+                grow(child, depth - 1, width);
+            }
+        }
+    }
+
+    /**
+     * 优化前的实现：每次调用新建 FSTObjectOutput/FSTObjectInput 与字节流
+     */
+    static class LegacyFstSerializer implements Serializer {
+
+        @Override
+        public byte[] serialize(Object obj) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FSTObjectOutput fout = new FSTObjectOutput(out)) {
+                fout.writeObject(obj);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws IOException {
+            try (FSTObjectInput in = new FSTObjectInput(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache;
+
+import cn.elmi.components.cache.model.CacheElement;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 非阻塞的缓存通道，一级缓存与 {@link CacheChannel} 共享，二级缓存与广播通过多路复用的 redis 连接完成
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public interface AsyncCacheChannel {
+
+    /**
+     * 获取缓存中的数据
+     *
+     * @param region: Cache Region name
+     * @param key:    Cache key
+     * @return cache object
+     */
+    <K, V> CompletableFuture<CacheElement<K, V>> get(String region, K key);
+
+    /**
+     * 批量获取缓存中的数据，未命中一级缓存的 key 通过一次 MGET 获取
+     *
+     * @param region: Cache Region name
+     * @param keys:   Cache keys
+     * @return cached objects in the order of keys, missing keys are absent
+     */
+    <K, V> CompletableFuture<Map<K, V>> getAll(String region, Collection<K> keys);
+
+    /**
+     * 写入缓存
+     *
+     * @param region: Cache Region name
+     * @param key:    Cache key
+     * @param value:  Cache value
+     */
+    <K, V> CompletableFuture<Void> put(String region, K key, V value);
+
+    /**
+     * 删除缓存
+     *
+     * @param region: Cache Region name
+     * @param key:    Cache key
+     */
+    <K> CompletableFuture<Void> evict(String region, K key);
+
+    /**
+     * 批量删除缓存
+     *
+     * @param region: Cache region name
+     * @param keys:   Cache key
+     */
+    <K> CompletableFuture<Void> batchEvict(String region, List<K> keys);
+
+}
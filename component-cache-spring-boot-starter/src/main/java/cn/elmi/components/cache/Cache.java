@@ -17,7 +17,10 @@
 package cn.elmi.components.cache;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -35,6 +38,26 @@ public interface Cache<K, V> extends Closeable {
      */
     public V getValue(K key);
 
+    /**
+     * Get items from the cache in bulk, missing keys are absent from the result
+     *
+     * @param keys
+     *            cache keys
+     * @return the cached objects
+     */
+    default Map<K, V> getValues(Collection<K> keys) {
+        Map<K, V> values = new HashMap<>();
+        if (keys != null) {
+            for (K key : keys) {
+                V value = getValue(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+        return values;
+    }
+
     /**
      * Add an item to the cache, nontransactionally, with failfast semantics
      * 
@@ -45,6 +68,47 @@ public interface Cache<K, V> extends Closeable {
      */
     public void put(K key, V value);
 
+    /**
+     * Add an item to the cache with a time to live, caches which do not support per entry expiry fall back to
+     * {@link #put(Object, Object)}
+     *
+     * @param key
+     *            cache key
+     * @param value
+     *            cache value
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    default void put(K key, V value, long ttl) {
+        put(key, value);
+    }
+
+    /**
+     * Add items to the cache in bulk
+     *
+     * @param values
+     *            cache keys and values
+     */
+    default void putAll(Map<K, V> values) {
+        if (values != null) {
+            values.forEach(this::put);
+        }
+    }
+
+    /**
+     * Add items to the cache in bulk with a time to live
+     *
+     * @param values
+     *            cache keys and values
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    default void putAll(Map<K, V> values, long ttl) {
+        if (values != null) {
+            values.forEach((k, v) -> put(k, v, ttl));
+        }
+    }
+
     /**
      * Cache item key set
      * 
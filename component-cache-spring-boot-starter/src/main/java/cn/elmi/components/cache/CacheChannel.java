@@ -18,9 +18,12 @@ package cn.elmi.components.cache;
 
 import cn.elmi.components.cache.model.CacheElement;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 /**
  * @author Arthur
@@ -37,8 +40,36 @@ public interface CacheChannel {
      */
     <K, V> CacheElement<K, V> get(String region, K key);
 
+    /**
+     * 获取缓存中的数据，两级缓存都未命中时通过 call 加载并写入缓存<br/>
+     * region 开启负缓存时，call 返回 null 会写入负缓存标记，之后的读取返回 {@link CacheElement#isAbsent()} 为 true 的元素
+     *
+     * @param region: Cache Region name
+     * @param key:    Cache key
+     * @param call:   value loader
+     * @return cache object
+     */
     <K, V> CacheElement<K, V> get(String region, K key, Callable<V> call);
 
+    /**
+     * 批量获取缓存中的数据，先查一级缓存，未命中的再一次性从二级缓存获取
+     *
+     * @param region: Cache Region name
+     * @param keys:   Cache keys
+     * @return cached objects in the order of keys, missing keys are absent
+     */
+    <K, V> Map<K, V> getAll(String region, Collection<K> keys);
+
+    /**
+     * 批量获取缓存中的数据，两级缓存都未命中的 key 交由 loader 一次性加载并写入缓存
+     *
+     * @param region: Cache Region name
+     * @param keys:   Cache keys
+     * @param loader: batch loader of the missing keys
+     * @return cached or loaded objects in the order of keys
+     */
+    <K, V> Map<K, V> getAll(String region, Collection<K> keys, Function<Collection<K>, Map<K, V>> loader);
+
     /**
      * 写入缓存
      *
@@ -48,6 +79,24 @@ public interface CacheChannel {
      */
     <K, V> void put(String region, K key, V value);
 
+    /**
+     * 写入缓存并指定二级缓存的过期时间，一级缓存仍按 region 的配置过期
+     *
+     * @param region: Cache Region name
+     * @param key:    Cache key
+     * @param value:  Cache value
+     * @param ttl:    L2 time to live in milliseconds
+     */
+    <K, V> void put(String region, K key, V value, long ttl);
+
+    /**
+     * 批量写入缓存，二级缓存通过 pipeline 写入，只发送一条批量失效广播
+     *
+     * @param region: Cache Region name
+     * @param values: Cache keys and values, null values are evicted
+     */
+    <K, V> void putAll(String region, Map<K, V> values);
+
     /**
      * 删除缓存
      *
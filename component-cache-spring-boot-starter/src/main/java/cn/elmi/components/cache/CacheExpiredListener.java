@@ -30,4 +30,20 @@ public interface CacheExpiredListener {
      */
     <K> void notifyElementExpired(String region, K key);
 
+    /**
+     * 一级缓存中的对象被移除时触发，默认只有超时移除时调用 {@link #notifyElementExpired}
+     *
+     * @param region
+     * @param key
+     * @param cause
+     *            移除原因：expired、size、explicit、replaced、collected
+     */
+    default <K> void notifyElementRemoved(String region, K key, String cause) {
+        if (CAUSE_EXPIRED.equals(cause)) {
+            notifyElementExpired(region, key);
+        }
+    }
+
+    String CAUSE_EXPIRED = "expired";
+
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import cn.elmi.components.cache.model.Command;
+import cn.elmi.components.cache.utils.KeyBatcher;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 失效广播的批量发布：在 window 毫秒内或累计 maxKeys 个 key 时，按 region 合并为一条多 key 的命令发布，
+ * 合并与定时刷新由 {@link KeyBatcher} 完成
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class BatchingPublisher implements Closeable {
+
+    private final Consumer<Command<?>> sink;
+    private final int commandSize;
+    private final KeyBatcher batcher;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder keys = new LongAdder();
+
+    /**
+     * @param sink
+     *            publish a single command
+     * @param window
+     *            max milliseconds a command waits before it is published
+     * @param maxKeys
+     *            pending keys that trigger an immediate flush
+     * @param commandSize
+     *            max keys carried by one command
+     */
+    public BatchingPublisher(Consumer<Command<?>> sink, long window, int maxKeys, int commandSize) {
+        this.sink = sink;
+        this.commandSize = Math.max(1, commandSize);
+        this.batcher = new KeyBatcher("cache-broadcast-flush", this::publishKeys,
+                region -> publish(new Command<>(Command.OPT_CLEAR_KEY, region)), window, maxKeys);
+    }
+
+    /**
+     * 缓存失效，key 可以是单个 key 或 key 的列表
+     */
+    public void evict(String region, Object key) {
+        batcher.addAll(region, key instanceof List ? (List<?>) key : Collections.singletonList(key));
+    }
+
+    /**
+     * 清除 region，同一窗口内该 region 的失效 key 随之丢弃
+     */
+    public void clear(String region) {
+        batcher.clear(region);
+    }
+
+    /**
+     * 发布当前窗口内积累的命令
+     */
+    public void flush() {
+        batcher.flush();
+    }
+
+    private void publishKeys(String region, List<Object> list) {
+        for (int from = 0; from < list.size(); from += commandSize) {
+            List<Object> batch = new ArrayList<>(list.subList(from, Math.min(from + commandSize, list.size())));
+            publish(new Command<List<Object>>(Command.OPT_DELETE_KEY, region, batch));
+            keys.add(batch.size());
+        }
+    }
+
+    private void publish(Command<?> cmd) {
+        sink.accept(cmd);
+        published.increment();
+    }
+
+    /**
+     * 批量发布次数
+     */
+    public long getFlushes() {
+        return batcher.getFlushes();
+    }
+
+    /**
+     * 实际发布的命令数
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * 发布的失效 key 数
+     */
+    public long getKeys() {
+        return keys.sum();
+    }
+
+    /**
+     * 最近一次批量发布中，最早入队的命令到发布完成的毫秒数
+     */
+    public long getLastFlushLatency() {
+        return batcher.getLastFlushLatency();
+    }
+
+    /**
+     * 最大的批量发布延迟（毫秒）
+     */
+    public long getMaxFlushLatency() {
+        return batcher.getMaxFlushLatency();
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * 广播命令的传输方式，未配置时 {@link RedisCacheChannel} 使用 redis 的发布订阅
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public interface CommandTransport extends Closeable {
+
+    /**
+     * 发布编码后的命令，失败时记录日志，不抛出异常
+     */
+    void publish(byte[] message);
+
+    /**
+     * 开始接收命令，可能包括本节点发布的命令
+     *
+     * @param receiver
+     *            received message
+     * @param onGap
+     *            called when messages may have been lost, the receiver should clear its L1 cache
+     */
+    void start(Consumer<byte[]> receiver, Runnable onGap);
+
+    @Override
+    void close();
+
+}
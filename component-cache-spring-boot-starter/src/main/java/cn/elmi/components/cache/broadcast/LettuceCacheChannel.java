@@ -0,0 +1,329 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import cn.elmi.components.cache.AsyncCacheChannel;
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.l2.RedisCache;
+import cn.elmi.components.cache.model.CacheElement;
+import cn.elmi.components.cache.model.Command;
+import cn.elmi.components.cache.model.Tombstone;
+import cn.elmi.components.cache.utils.CacheManager;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static cn.elmi.components.cache.broadcast.RedisCacheChannel.L1;
+import static cn.elmi.components.cache.broadcast.RedisCacheChannel.L2;
+
+/**
+ * 基于 lettuce 的非阻塞缓存通道，通过它发起的二级缓存操作与广播共享一个多路复用连接，不占用 jedis 连接池。<br/>
+ * 回调在 lettuce 的 I/O 线程上执行，其中只能同步操作一级缓存，二级缓存的清理也必须通过该连接异步完成
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class LettuceCacheChannel implements AsyncCacheChannel {
+
+    @Autowired
+    private CacheProp cacheProp;
+
+    @Autowired
+    private StatefulRedisConnection<byte[], byte[]> connection;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired(required = false)
+    private CommandTransport transport;
+
+    private RedisAsyncCommands<byte[], byte[]> commands;
+
+    private boolean legacyFormat;
+
+    @PostConstruct
+    public void init() {
+        commands = connection.async();
+        legacyFormat = RedisCacheChannel.FORMAT_LEGACY.equalsIgnoreCase(cacheProp.getChannel().getFormat());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> CompletableFuture<CacheElement<K, V>> get(String region, K key) {
+        CacheElement<K, V> elm = new CacheElement<>();
+        elm.setRegion(region);
+        elm.setKey(key);
+        if (region == null || key == null) {
+            return CompletableFuture.completedFuture(elm);
+        }
+
+        Object value = alive(region, key, cacheManager.get(L1, region, key));
+        if (value != null) {
+            elm.setLevel(L1);
+            return CompletableFuture.completedFuture(fill(elm, value));
+        }
+
+        RedisCache<K, V> l2 = redis(region);
+        if (l2 == null) {
+            return CompletableFuture.completedFuture(elm);
+        }
+        return rawKey(l2, key).thenCompose(raw -> commands.get(raw).toCompletableFuture()).thenApply(bytes -> {
+            Object v = alive(l2, key, deserialize(l2, key, bytes));
+            if (v != null) {
+                elm.setLevel(L2);
+                cacheManager.set(L1, region, key, v);
+            }
+            return fill(elm, v);
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> CompletableFuture<Map<K, V>> getAll(String region, Collection<K> keys) {
+        Map<K, V> found = new HashMap<>();
+        if (region == null || keys == null || keys.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+
+        List<K> distinct = RedisCacheChannel.distinct(keys);
+        List<K> misses = new ArrayList<>();
+        Map<K, Object> l1 = cacheManager.getAll(L1, region, distinct);
+        for (K key : distinct) {
+            Object v = alive(region, key, l1.get(key));
+            if (v == null) {
+                misses.add(key);
+            } else if (!(v instanceof Tombstone)) {
+                found.put(key, (V) v);
+            }
+        }
+
+        RedisCache<K, V> l2 = redis(region);
+        if (misses.isEmpty() || l2 == null) {
+            return CompletableFuture.completedFuture(ordered(keys, found));
+        }
+        return rawKeys(l2, misses).thenCompose(raw -> commands.mget(raw).toCompletableFuture()).thenApply(values -> {
+            for (int i = 0; i < values.size(); i++) {
+                KeyValue<byte[], byte[]> kv = values.get(i);
+                K key = misses.get(i);
+                Object v = alive(l2, key, kv.hasValue() ? deserialize(l2, key, kv.getValue()) : null);
+                if (v != null) {
+                    cacheManager.set(L1, region, key, v);
+                    if (!(v instanceof Tombstone)) {
+                        found.put(key, (V) v);
+                    }
+                }
+            }
+            return ordered(keys, found);
+        });
+    }
+
+    @Override
+    public <K, V> CompletableFuture<Void> put(String region, K key, V value) {
+        if (region == null || key == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (value == null) {
+            return evict(region, key);
+        }
+
+        CompletableFuture<?> published = publish(new Command<K>(Command.OPT_DELETE_KEY, region, key));
+        cacheManager.set(L1, region, key, value);
+
+        RedisCache<K, V> l2 = redis(region);
+        if (l2 == null) {
+            return published.thenApply(r -> null);
+        }
+        CompletableFuture<String> written;
+        try {
+            byte[] bytes = l2.encode(key, value);
+            long ttl = l2.expiry();
+            written = rawKey(l2, key).thenCompose(raw -> (ttl > 0 ? commands.psetex(raw, ttl, bytes)
+                    : commands.set(raw, bytes)).toCompletableFuture());
+        } catch (Exception e) {
+            log.error("Put " + key + " in redis fail", e);
+            written = failed(e);
+        }
+        return CompletableFuture.allOf(published, written);
+    }
+
+    @Override
+    public <K> CompletableFuture<Void> evict(String region, K key) {
+        if (region == null || key == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        cacheManager.evict(L1, region, key);
+        RedisCache<K, Object> l2 = redis(region);
+        CompletableFuture<?> deleted = l2 == null ? CompletableFuture.completedFuture(null)
+                : rawKey(l2, key).thenCompose(raw -> commands.del(raw).toCompletableFuture());
+        return CompletableFuture.allOf(deleted, publish(new Command<K>(Command.OPT_DELETE_KEY, region, key)));
+    }
+
+    @Override
+    public <K> CompletableFuture<Void> batchEvict(String region, List<K> keys) {
+        if (region == null || keys == null || keys.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        cacheManager.batchEvict(L1, region, keys);
+        RedisCache<K, Object> l2 = redis(region);
+        CompletableFuture<?> deleted = l2 == null ? CompletableFuture.completedFuture(null)
+                : rawKeys(l2, keys).thenCompose(raw -> commands.del(raw).toCompletableFuture());
+        return CompletableFuture.allOf(deleted,
+                publish(new Command<List<K>>(Command.OPT_DELETE_KEY, region, new ArrayList<>(keys))));
+    }
+
+    /**
+     * 区域未启用二级缓存时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V> RedisCache<K, V> redis(String region) {
+        Cache<K, V> cache = cacheManager.getCache(L2, region);
+        return cache instanceof RedisCache ? (RedisCache<K, V>) cache : null;
+    }
+
+    /**
+     * region 的代数，未缓存时通过 lettuce 连接异步读取，不借用 jedis 连接池；不使用代数时为 -1
+     */
+    private CompletableFuture<Long> generation(RedisCache<?, ?> l2) {
+        Long gen = l2.getGeneration();
+        if (!l2.isGenerational() || gen != null) {
+            return CompletableFuture.completedFuture(l2.isGenerational() ? gen : -1L);
+        }
+        return commands.get(l2.generationKey().getBytes(StandardCharsets.UTF_8)).toCompletableFuture()
+                .thenApply(bytes -> {
+                    long current = bytes == null ? 0L : Long.parseLong(new String(bytes, StandardCharsets.UTF_8));
+                    l2.setGeneration(current);
+                    return current;
+                });
+    }
+
+    private <K> CompletableFuture<byte[]> rawKey(RedisCache<K, ?> l2, K key) {
+        return generation(l2).thenApply(gen -> l2.rawKey(gen, key));
+    }
+
+    private <K> CompletableFuture<byte[][]> rawKeys(RedisCache<K, ?> l2, List<K> keys) {
+        return generation(l2).thenApply(gen -> keys.stream().map(key -> l2.rawKey(gen, key)).toArray(byte[][]::new));
+    }
+
+    /**
+     * 在 lettuce 的 I/O 线程上执行，无法反序列化的值通过同一个连接异步删除，不能借用 jedis 连接池阻塞事件循环
+     */
+    private <K> Object deserialize(RedisCache<K, ?> l2, K key, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return l2.decode(key, bytes);
+        } catch (Exception e) {
+            log.error("Error occured when get data from redis", e);
+            delete(l2, key);
+            return null;
+        }
+    }
+
+    /**
+     * 过期的负缓存标记当作未命中处理
+     */
+    private <K> Object alive(String region, K key, Object value) {
+        if (value instanceof Tombstone && ((Tombstone) value).isExpired()) {
+            cacheManager.evict(L1, region, key);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * 二级缓存中过期的负缓存标记，与 {@link #deserialize} 一样异步删除
+     */
+    private <K> Object alive(RedisCache<K, ?> l2, K key, Object value) {
+        if (value instanceof Tombstone && ((Tombstone) value).isExpired()) {
+            delete(l2, key);
+            return null;
+        }
+        return value;
+    }
+
+    private <K> void delete(RedisCache<K, ?> l2, K key) {
+        rawKey(l2, key).thenCompose(raw -> commands.del(raw).toCompletableFuture()).whenComplete((r, e) -> {
+            if (e != null) {
+                log.error("Delete " + key + " of region " + l2.getRegion() + " from redis fail", e);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> CacheElement<K, V> fill(CacheElement<K, V> elm, Object value) {
+        if (value instanceof Tombstone) {
+            elm.setAbsent(true);
+        } else {
+            elm.setValue((V) value);
+        }
+        return elm;
+    }
+
+    private CompletableFuture<Long> publish(Command<?> cmd) {
+        if (transport != null) {
+            byte[] message = cmd.toBinary();
+            if (message != null) {
+                transport.publish(message);
+            }
+            return CompletableFuture.completedFuture(0L);
+        }
+        byte[] message = legacyFormat ? cmd.toBuffers() : cmd.toBinary();
+        if (message == null) {
+            return CompletableFuture.completedFuture(0L);
+        }
+        if (legacyFormat) {
+            // 与 RedisCacheChannel 保持一致：命令按 ISO-8859-1 转为字符串，jedis 以 UTF-8 编码发布
+            message = new String(message, StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] channel = RedisCacheChannel.channel(cacheProp.getChannel(), cmd.getRegion())
+                .getBytes(StandardCharsets.UTF_8);
+        return commands.publish(channel, message).toCompletableFuture();
+    }
+
+    private static <K, V> Map<K, V> ordered(Collection<K> keys, Map<K, V> values) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V v = values.get(key);
+            if (v != null) {
+                result.put(key, v);
+            }
+        }
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+}
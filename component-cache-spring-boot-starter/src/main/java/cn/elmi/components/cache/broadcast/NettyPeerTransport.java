@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import cn.elmi.components.cache.core.props.CacheProp.PeerProp;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 节点之间通过 TCP 直接广播命令，不经过 redis：每个节点监听一个端口，并与成员列表中的其他节点各保持一个连接。<br/>
+ * 每条命令以 4 字节长度开头，写入池化的缓冲区，同一个事件循环周期内的多条命令合并为一次 flush（最多 256 条）；
+ * 未连接的节点收不到命令，重新连接后由接收方清除一级缓存；发送方在连接建立前丢弃过命令时，
+ * 连接后先发送一个长度为 0 的帧，接收方收到后同样清除一级缓存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class NettyPeerTransport implements CommandTransport {
+
+    private static final int FLUSH_LIMIT = 256;
+
+    private final PeerProp prop;
+    private final EventLoopGroup group;
+    private final ChannelGroup inbound = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    private final List<Peer> peers = new ArrayList<>();
+
+    private volatile boolean running;
+    private Channel server;
+    private Consumer<byte[]> receiver;
+    private Runnable onGap;
+
+    /**
+     * 有连接进来的节点断开后置位，下一次有节点连接时通知接收方
+     */
+    private final AtomicBoolean lost = new AtomicBoolean();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    public NettyPeerTransport(PeerProp prop) {
+        this.prop = prop;
+        this.group = new NioEventLoopGroup(prop.getThreads(), new DefaultThreadFactory("cache-channel-peer", true));
+        for (String member : prop.getMembers()) {
+            InetSocketAddress address = address(member);
+            if (!isSelf(address)) {
+                peers.add(new Peer(address));
+            }
+        }
+    }
+
+    /**
+     * 发送到当前已连接的节点
+     */
+    @Override
+    public void publish(byte[] message) {
+        for (Peer peer : peers) {
+            peer.send(message);
+        }
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver, Runnable onGap) {
+        if (running) {
+            return;
+        }
+        this.receiver = receiver;
+        this.onGap = onGap;
+        this.running = true;
+
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childOption(ChannelOption.TCP_NODELAY, true).childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(prop.getMaxFrameLength(), 0, 4, 0, 4),
+                                new Inbound());
+                    }
+                }).bind(prop.getHost(), prop.getPort()).syncUninterruptibly().channel();
+        log.info("Cache peer transport listening on {}, peers={}", server.localAddress(), prop.getMembers());
+
+        for (Peer peer : peers) {
+            peer.connect();
+        }
+    }
+
+    private class Inbound extends SimpleChannelInboundHandler<ByteBuf> {
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            inbound.add(ctx.channel());
+            if (lost.compareAndSet(true, false)) {
+                log.warn("Cache peer {} reconnected, commands may have been lost", ctx.channel().remoteAddress());
+                onGap.run();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (running) {
+                lost.set(true);
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+            if (!frame.isReadable()) {
+                log.warn("Cache peer {} dropped commands before connected", ctx.channel().remoteAddress());
+                onGap.run();
+                return;
+            }
+            received.increment();
+            receiver.accept(ByteBufUtil.getBytes(frame));
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Cache peer connection " + ctx.channel().remoteAddress() + " fail", cause);
+            ctx.close();
+        }
+    }
+
+    /**
+     * 到另一个节点的连接，断开后定时重连
+     */
+    private class Peer {
+
+        private final InetSocketAddress address;
+        private volatile Channel channel;
+
+        /**
+         * 未连接时丢弃过命令，连接后需要通知对方
+         */
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private void connect() {
+            if (!running) {
+                return;
+            }
+            new Bootstrap().group(group).channel(NioSocketChannel.class).option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.SO_KEEPALIVE, true).handler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            // 合并同一个事件循环周期内的 flush，多条命令一次写出
+                            ch.pipeline().addLast(new FlushConsolidationHandler(FLUSH_LIMIT, true),
+                                    new ChannelInboundHandlerAdapter() {
+                                        @Override
+                                        public void channelInactive(ChannelHandlerContext ctx) {
+                                            channel = null;
+                                            reconnect();
+                                        }
+
+                                        @Override
+                                        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                            ctx.close();
+                                        }
+                                    });
+                        }
+                    }).connect(address).addListener((ChannelFutureListener) f -> {
+                        if (f.isSuccess()) {
+                            channel = f.channel();
+                            log.info("Connected to cache peer {}", address);
+                            gap(f.channel());
+                        } else {
+                            reconnect();
+                        }
+                    });
+        }
+
+        private void reconnect() {
+            if (running) {
+                group.schedule(this::connect, prop.getReconnectInterval(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void send(byte[] message) {
+            Channel ch = channel;
+            if (ch == null || !ch.isActive()) {
+                dropped.increment();
+                dirty.set(true);
+                // 连接可能在置位前刚刚建立，错过了连接时的检查，由这里发送空帧
+                ch = channel;
+                if (ch != null && ch.isActive()) {
+                    gap(ch);
+                }
+                return;
+            }
+            ByteBuf buf = ch.alloc().ioBuffer(4 + message.length);
+            buf.writeInt(message.length).writeBytes(message);
+            ch.writeAndFlush(buf, ch.voidPromise());
+            sent.increment();
+        }
+
+        /**
+         * 丢弃过命令时发送一个空帧，接收方据此清除一级缓存
+         */
+        private void gap(Channel ch) {
+            if (dirty.getAndSet(false)) {
+                ch.writeAndFlush(ch.alloc().ioBuffer(4).writeInt(0), ch.voidPromise());
+            }
+        }
+    }
+
+    private static InetSocketAddress address(String member) {
+        int idx = member.lastIndexOf(':');
+        return new InetSocketAddress(member.substring(0, idx).trim(), Integer.parseInt(member.substring(idx + 1).trim()));
+    }
+
+    private boolean isSelf(InetSocketAddress address) {
+        if (address.getPort() != prop.getPort()) {
+            return false;
+        }
+        InetAddress ip = address.getAddress();
+        try {
+            return ip != null && (ip.isAnyLocalAddress() || ip.isLoopbackAddress()
+                    || NetworkInterface.getByInetAddress(ip) != null);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 当前已连接的节点数
+     */
+    public int getConnectedPeers() {
+        int connected = 0;
+        for (Peer peer : peers) {
+            Channel ch = peer.channel;
+            connected += ch != null && ch.isActive() ? 1 : 0;
+        }
+        return connected;
+    }
+
+    /**
+     * 已发送的命令数，每个节点计一次
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * 因节点未连接而未发送的命令数
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 收到的命令数
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Peer peer : peers) {
+            Channel ch = peer.channel;
+            if (ch != null) {
+                ch.close();
+            }
+        }
+        inbound.close().awaitUninterruptibly();
+        if (server != null) {
+            server.close().awaitUninterruptibly();
+        }
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+}
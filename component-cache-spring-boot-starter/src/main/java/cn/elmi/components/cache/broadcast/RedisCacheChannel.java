@@ -16,28 +16,50 @@
 
 package cn.elmi.components.cache.broadcast;
 
+import cn.elmi.components.cache.Cache;
 import cn.elmi.components.cache.CacheChannel;
 import cn.elmi.components.cache.CacheException;
 import cn.elmi.components.cache.CacheExpiredListener;
+import cn.elmi.components.cache.CacheRegionListener;
 import cn.elmi.components.cache.core.configuration.CacheAutoConfiguration;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.l2.RedisCache;
 import cn.elmi.components.cache.model.CacheElement;
 import cn.elmi.components.cache.model.Command;
+import cn.elmi.components.cache.model.Tombstone;
 import cn.elmi.components.cache.utils.CacheManager;
+import cn.elmi.components.cache.utils.KeyBatcher;
+import cn.elmi.components.cache.utils.Refresher;
+import cn.elmi.components.cache.utils.SingleFlight;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.util.Pool;
 
 import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author Arthur
@@ -46,13 +68,16 @@ import java.util.concurrent.TimeUnit;
 @ConditionalOnBean(Pool.class)
 @AutoConfigureAfter(CacheAutoConfiguration.class)
 @Slf4j
-public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListener, CacheChannel {
+public class RedisCacheChannel extends BinaryJedisPubSub
+        implements CacheExpiredListener, CacheRegionListener, CacheChannel {
 
     public final static byte L1 = 1;
     public final static byte L2 = 2;
 
     private static final String COMMAND_CHARSET = "ISO-8859-1";
-    private static final String CHANNEL = "redis_channel";
+    static final String CHANNEL = "redis_channel";
+    static final byte[] CHANNEL_BYTES = CHANNEL.getBytes(StandardCharsets.ISO_8859_1);
+    static final String FORMAT_LEGACY = "legacy";
 
     @Autowired
     private Pool<Jedis> pool;
@@ -60,7 +85,64 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private CacheProp cacheProp;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private Refresher refresher;
+
+    private BatchingPublisher publisher;
+
+    private StripedDispatcher dispatcher;
+
+    private KeyBatcher expiries;
+
+    /**
+     * 配置了其他传输方式时替代 redis 发布订阅
+     */
+    @Autowired(required = false)
+    private CommandTransport transport;
+
+    private boolean legacyFormat;
+
+    /**
+     * 按 region 划分的频道，频道名 -> 是否已订阅
+     */
+    private final ConcurrentHashMap<String, Boolean> regionChannels = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点写入一级缓存的版本，(region, key) -> version
+     */
+    private com.google.common.cache.Cache<Object, Long> versions;
+
     @PostConstruct
+    public void init() {
+        refresher = new Refresher(cacheProp);
+        legacyFormat = FORMAT_LEGACY.equalsIgnoreCase(cacheProp.getChannel().getFormat());
+        versions = CacheBuilder.newBuilder().maximumSize(cacheProp.getChannel().getVersions()).build();
+        CacheProp.BatchProp batch = cacheProp.getBatch();
+        if (batch.getBroadcastWindow() > 0) {
+            publisher = new BatchingPublisher(this::publish, batch.getBroadcastWindow(), batch.getBroadcastMaxKeys(),
+                    batch.getBroadcastSize());
+        }
+        if (batch.getExpireWindow() > 0) {
+            expiries = new KeyBatcher("cache-expire-flush", (region, keys) -> {
+                cacheManager.batchEvict(L2, region, keys);
+                sendBatchEvictCmd(region, keys);
+            }, batch.getExpireWindow(), batch.getBroadcastSize());
+        }
+        CacheProp.DispatchProp dispatch = cacheProp.getChannel().getDispatch();
+        if (dispatch.getThreads() > 0) {
+            dispatcher = new StripedDispatcher(dispatch.getThreads(), dispatch.getQueue(), this::onClearCacheKey);
+        }
+        if (transport != null) {
+            transport.start(this::receive, this::onGap);
+        } else {
+            subscribe();
+        }
+    }
+
     public void subscribe() {
         try {
             new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
@@ -75,7 +157,7 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
             }).execute(() -> {
                 try (Jedis jedis = pool.getResource()) {
                     log.info("Jedis subscribe begin");
-                    jedis.subscribe(this, RedisCacheChannel.CHANNEL);
+                    jedis.subscribe(this, CHANNEL_BYTES);
                 }
             });
 
@@ -86,44 +168,286 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <K, V> CacheElement<K, V> get(String region, K key) {
         CacheElement<K, V> obj = new CacheElement<K, V>();
         obj.setRegion(region);
         obj.setKey(key);
         if (region != null && key != null) {
-            obj.setValue(cacheManager.get(L1, region, key));
-            if (obj.getValue() == null) {
-                obj.setValue(cacheManager.get(L2, region, key));
-                if (obj.getValue() != null) {
+            Object value = alive(L1, region, key, cacheManager.get(L1, region, key));
+            if (value == null) {
+                value = alive(L2, region, key, cacheManager.get(L2, region, key));
+                if (value != null) {
                     obj.setLevel(L2);
-                    cacheManager.set(L1, region, key, obj.getValue());
+                    cacheManager.set(L1, region, key, value);
                 }
             } else {
                 obj.setLevel(L1);
             }
+            if (value instanceof Tombstone) {
+                obj.setAbsent(true);
+            } else {
+                obj.setValue((V) value);
+            }
         }
         return obj;
     }
 
+    /**
+     * 过期的负缓存标记当作未命中处理
+     */
+    private <K> Object alive(int level, String region, K key, Object value) {
+        if (value instanceof Tombstone && ((Tombstone) value).isExpired()) {
+            cacheManager.evict(level, region, key);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * 记录本节点写入一级缓存的版本
+     */
+    private <K> void written(String region, K key) {
+        versions.put(new AbstractMap.SimpleImmutableEntry<>(region, key), Command.nextVersion());
+    }
+
+    /**
+     * 本节点写入的值是否比失效命令更新；旧版本节点发出的命令没有版本（0），无法比较，总是执行
+     */
+    private <K> boolean newer(String region, K key, long version) {
+        if (version <= 0) {
+            return false;
+        }
+        Long written = versions.getIfPresent(new AbstractMap.SimpleImmutableEntry<>(region, key));
+        return written != null && written > version;
+    }
+
+    /**
+     * 写入负缓存标记，未开启负缓存的 region 不做处理
+     */
+    private <K> void putAbsent(String region, K key) {
+        long ttl = cacheProp.getPolicy(region).getNullTtl();
+        if (ttl > 0) {
+            Tombstone tombstone = new Tombstone(ttl);
+            written(region, key);
+            sendEvictCmd(region, key);
+            cacheManager.set(L1, region, key, tombstone);
+            cacheManager.set(L2, region, key, tombstone, ttl);
+        }
+    }
+
     @Override
     public <K, V> CacheElement<K, V> get(String region, K key, Callable<V> call) {
         CacheElement<K, V> elm = get(region, key);
+        if (region == null || key == null) {
+            return elm;
+        }
 
-        if (null == elm.getValue()) {
-            try {
-                V v = call.call();
-                if (null != v) {
-                    elm.setValue(v);
-                    put(region, key, v);
-                }
-            } catch (Exception e) {
-                log.error("Cache channel call error", e);
+        Object flightKey = new AbstractMap.SimpleImmutableEntry<>(region, key);
+        if (elm.isAbsent()) {
+            return elm;
+        }
+        if (null != elm.getValue()) {
+            // 超过 refreshAhead 的值仍然返回，同时在后台重新加载
+            if (refresher.shouldRefresh(region, key)) {
+                refresher.refresh(flightKey, () -> {
+                    try {
+                        load(region, key, call, flightKey);
+                    } catch (Exception e) {
+                        throw new CacheException(e);
+                    }
+                });
             }
+            return elm;
+        }
+
+        try {
+            elm.setValue(load(region, key, call, flightKey));
+        } catch (TimeoutException e) {
+            log.warn("Wait for cache loading timeout, region={}, key={}", region, key);
+            elm.setValue(refresher.stale(region, key));
+        } catch (Exception e) {
+            log.error("Cache channel call error", e);
+            elm.setValue(refresher.stale(region, key));
         }
 
         return elm;
     }
 
+    /**
+     * 同一节点上相同 region、key 只有一个线程执行加载，其余线程等待其结果
+     */
+    private <K, V> V load(String region, K key, Callable<V> call, Object flightKey) throws Exception {
+        return singleFlight.execute(flightKey, () -> {
+            V loaded = call.call();
+            if (null != loaded) {
+                put(region, key, loaded);
+            } else {
+                putAbsent(region, key);
+            }
+            return loaded;
+        }, cacheProp.getLoad().getTimeout());
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(String region, Collection<K> keys) {
+        if (region == null || keys == null || keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return ordered(keys, lookup(region, distinct(keys), new HashSet<>()));
+    }
+
+    /**
+     * 先查一级缓存，未命中的 key 一次性从二级缓存获取并回填一级缓存
+     *
+     * @param keys
+     *            不包含 null 与重复元素的 key，见 {@link #distinct}
+     * @param absent
+     *            命中负缓存的 key
+     * @return 命中的值
+     */
+    @SuppressWarnings("unchecked")
+    private <K, V> Map<K, V> lookup(String region, List<K> keys, Set<K> absent) {
+        Map<K, V> found = new HashMap<>();
+        List<K> misses = new ArrayList<>();
+        Map<K, Object> l1 = cacheManager.getAll(L1, region, keys);
+        for (K key : keys) {
+            Object v = alive(L1, region, key, l1.get(key));
+            if (v instanceof Tombstone) {
+                absent.add(key);
+            } else if (v != null) {
+                found.put(key, (V) v);
+            } else {
+                misses.add(key);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<K, Object> l2 = cacheManager.getAll(L2, region, misses);
+            l2.forEach((k, v) -> {
+                if (alive(L2, region, k, v) != null) {
+                    cacheManager.set(L1, region, k, v);
+                    if (v instanceof Tombstone) {
+                        absent.add(k);
+                    } else {
+                        found.put(k, (V) v);
+                    }
+                }
+            });
+        }
+        return found;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(String region, Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+        if (region == null || keys == null || keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        List<K> distinct = distinct(keys);
+        Set<K> absent = new HashSet<>();
+        Map<K, V> found = lookup(region, distinct, absent);
+        List<K> misses = new ArrayList<>();
+        for (K key : distinct) {
+            if (!found.containsKey(key) && !absent.contains(key)) {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) {
+            return ordered(keys, found);
+        }
+
+        try {
+            Map<K, V> loaded = loader.apply(misses);
+            Map<K, V> values = new HashMap<>();
+            if (loaded != null) {
+                loaded.forEach((k, v) -> {
+                    if (k != null && v != null) {
+                        values.put(k, v);
+                    }
+                });
+                putAll(region, values);
+                found.putAll(values);
+            }
+            putAllAbsent(region, misses.stream().filter(k -> !values.containsKey(k)).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.error("Cache channel batch load error", e);
+        }
+
+        return ordered(keys, found);
+    }
+
+    /**
+     * 批量写入负缓存标记
+     */
+    private <K> void putAllAbsent(String region, List<K> keys) {
+        long ttl = cacheProp.getPolicy(region).getNullTtl();
+        if (ttl > 0 && !keys.isEmpty()) {
+            Tombstone tombstone = new Tombstone(ttl);
+            Map<K, Tombstone> values = new HashMap<>();
+            keys.forEach(k -> {
+                values.put(k, tombstone);
+                written(region, k);
+            });
+            sendBatchEvictCmd(region, keys);
+            cacheManager.putAll(L1, region, values);
+            cacheManager.putAll(L2, region, values, ttl);
+        }
+    }
+
+    /**
+     * 去掉 null 与重复的 key，一级缓存的批量读取（guava、caffeine 的 getAllPresent）不接受 null
+     */
+    static <K> List<K> distinct(Collection<K> keys) {
+        List<K> list = new ArrayList<>(keys.size());
+        Set<K> seen = new HashSet<>();
+        for (K key : keys) {
+            if (key != null && seen.add(key)) {
+                list.add(key);
+            }
+        }
+        return list;
+    }
+
+    private static <K, V> Map<K, V> ordered(Collection<K> keys, Map<K, V> values) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V v = values.get(key);
+            if (v != null) {
+                result.put(key, v);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 加载合并的统计信息
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * 批量广播的统计信息，未开启合并窗口时为 null
+     */
+    public BatchingPublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * 收到的命令的分发器，未启用时为 null
+     */
+    public StripedDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * 后台刷新的统计信息
+     */
+    public Refresher getRefresher() {
+        return refresher;
+    }
+
     /**
      * 分几种情况<br/>
      * Object obj1 = CacheManager.get(LEVEL_1, region, key);<br/>
@@ -139,18 +463,70 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
             if (value == null)
                 evict(region, key);
             else {
+                written(region, key);
                 sendEvictCmd(region, key);
                 cacheManager.set(L1, region, key, value);
                 cacheManager.set(L2, region, key, value);
+                refresher.loaded(region, key, value);
             }
         }
         log.info("write data to cache region={},key={},value={}", region, key, value);
     }
 
+    @Override
+    public <K, V> void put(String region, K key, V value, long ttl) {
+        if (region != null && key != null) {
+            if (value == null)
+                evict(region, key);
+            else {
+                written(region, key);
+                sendEvictCmd(region, key);
+                cacheManager.set(L1, region, key, value);
+                cacheManager.set(L2, region, key, value, ttl);
+                refresher.loaded(region, key, value);
+            }
+        }
+        log.info("write data to cache region={},key={},value={},ttl={}", region, key, value, ttl);
+    }
+
+    @Override
+    public <K, V> void putAll(String region, Map<K, V> values) {
+        if (region == null || values == null || values.isEmpty()) {
+            return;
+        }
+
+        Map<K, V> present = new HashMap<>();
+        List<K> absent = new ArrayList<>();
+        values.forEach((k, v) -> {
+            if (k != null) {
+                if (v == null) {
+                    absent.add(k);
+                } else {
+                    present.put(k, v);
+                }
+            }
+        });
+
+        if (!absent.isEmpty()) {
+            cacheManager.batchEvict(L1, region, absent);
+            cacheManager.batchEvict(L2, region, absent);
+        }
+        List<K> keys = new ArrayList<>(present.keySet());
+        keys.addAll(absent);
+        present.keySet().forEach(k -> written(region, k));
+        sendBatchEvictCmd(region, keys);
+        cacheManager.putAll(L1, region, present);
+        cacheManager.putAll(L2, region, present);
+        present.forEach((k, v) -> refresher.loaded(region, k, v));
+        absent.forEach(k -> refresher.invalidate(region, k));
+        log.info("write {} entries to cache region={}", present.size(), region);
+    }
+
     @Override
     public <K> void evict(String region, K key) {
         cacheManager.evict(L1, region, key);
         cacheManager.evict(L2, region, key);
+        refresher.invalidate(region, key);
         sendEvictCmd(region, key);
     }
 
@@ -158,6 +534,7 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
     public <K> void batchEvict(String region, List<K> keys) {
         cacheManager.batchEvict(L1, region, keys);
         cacheManager.batchEvict(L2, region, keys);
+        keys.forEach(k -> refresher.invalidate(region, k));
         sendBatchEvictCmd(region, keys);
     }
 
@@ -165,6 +542,7 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
     public void clear(String region) throws CacheException {
         cacheManager.clear(L1, region);
         cacheManager.clear(L2, region);
+        refresher.invalidateAll(region);
         sendClearCmd(region);
     }
 
@@ -173,9 +551,20 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
         return cacheManager.keys(L1, region);
     }
 
+    @Override
+    public <K> void notifyElementRemoved(String region, K key, String cause) {
+        if (cacheProp.getPolicy(region).getPropagate().contains(cause)) {
+            notifyElementExpired(region, key);
+        }
+    }
+
     @Override
     public <K> void notifyElementExpired(String region, K key) {
         log.debug("Cache data expired, region=" + region + ",key=" + key);
+        if (expiries != null) {
+            expiries.add(region, key);
+            return;
+        }
 
         // 删除二级缓存
         if (key instanceof List) {
@@ -192,13 +581,19 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
      * 发送清除缓存的广播命令
      */
     private <K, V> void sendBatchEvictCmd(String region, List<K> key) {
-        // 发送广播
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        if (publisher != null) {
+            publisher.evict(region, key);
+            return;
+        }
 
-        Command<List<K>> cmd = new Command<List<K>>(Command.OPT_DELETE_KEY, region, key);
-        try (Jedis jedis = pool.getResource();) {
-            jedis.publish(CHANNEL, new String(cmd.toBuffers(), COMMAND_CHARSET));
-        } catch (Exception e) {
-            log.error("Unable to delete cache,region=" + region + ",key=" + key, e);
+        // 发送广播，按 broadcastSize 分段
+        int size = Math.max(1, cacheProp.getBatch().getBroadcastSize());
+        for (int from = 0; from < key.size(); from += size) {
+            List<K> keys = new ArrayList<>(key.subList(from, Math.min(from + size, key.size())));
+            publish(new Command<List<K>>(Command.OPT_DELETE_KEY, region, keys));
         }
     }
 
@@ -206,12 +601,10 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
      * 发送清除缓存的广播命令
      */
     private <K, V> void sendEvictCmd(String region, K key) {
-        // 发送广播
-        Command<K> cmd = new Command<K>(Command.OPT_DELETE_KEY, region, key);
-        try (Jedis jedis = pool.getResource();) {
-            jedis.publish(CHANNEL, new String(cmd.toBuffers(), COMMAND_CHARSET));
-        } catch (Exception e) {
-            log.error("Unable to delete cache,region=" + region + ",key=" + key, e);
+        if (publisher != null) {
+            publisher.evict(region, key);
+        } else {
+            publish(new Command<K>(Command.OPT_DELETE_KEY, region, key));
         }
     }
 
@@ -219,26 +612,61 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
      * 发送清除缓存的广播命令
      */
     private <K, V> void sendClearCmd(String region) {
-        // 发送广播
-        Command<K> cmd = new Command<K>(Command.OPT_CLEAR_KEY, region);
+        if (publisher != null) {
+            publisher.clear(region);
+        } else {
+            publish(new Command<K>(Command.OPT_CLEAR_KEY, region));
+        }
+    }
+
+    /**
+     * 发布广播命令
+     */
+    private void publish(Command<?> cmd) {
+        if (transport != null) {
+            byte[] message = cmd.toBinary();
+            if (message != null) {
+                transport.publish(message);
+            }
+            return;
+        }
         try (Jedis jedis = pool.getResource();) {
-            jedis.publish(CHANNEL, new String(cmd.toBuffers(), COMMAND_CHARSET));
+            String channel = channel(cacheProp.getChannel(), cmd.getRegion());
+            if (legacyFormat) {
+                jedis.publish(channel, new String(cmd.toBuffers(), COMMAND_CHARSET));
+            } else {
+                byte[] message = cmd.toBinary();
+                if (message != null) {
+                    jedis.publish(channel.getBytes(StandardCharsets.UTF_8), message);
+                }
+            }
         } catch (Exception e) {
-            log.error("Unable to clear cache,region=" + region, e);
+            log.error("Unable to publish cache command,region=" + cmd.getRegion() + ",key=" + cmd.getKey(), e);
         }
     }
 
     /**
      * 删除一级缓存的键对应内容
      */
-    @SuppressWarnings("unchecked")
     protected <K, V> void onDeleteCacheKey(String region, K key) {
+        onDeleteCacheKey(region, key, Long.MAX_VALUE);
+    }
+
+    /**
+     * 删除一级缓存的键对应内容，本节点在 version 之后写入的 key 不删除
+     */
+    @SuppressWarnings("unchecked")
+    protected <K, V> void onDeleteCacheKey(String region, K key, long version) {
         if (key instanceof List) {
-            cacheManager.batchEvict(L1, region, (List<K>) key);
-        } else {
+            List<K> keys = ((List<K>) key).stream().filter(k -> !newer(region, k, version))
+                    .collect(Collectors.toList());
+            cacheManager.batchEvict(L1, region, keys);
+            keys.forEach(k -> refresher.invalidate(region, k));
+        } else if (!newer(region, key, version)) {
             cacheManager.evict(L1, region, key);
+            refresher.invalidate(region, key);
         }
-        log.debug("Received cache evict message, region={}, key={}", region, key);
+        log.debug("Received cache evict message, region={}, key={}, version={}", region, key, version);
     }
 
     /**
@@ -246,6 +674,11 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
      */
     protected void onClearCacheKey(String region) {
         cacheManager.clear(L1, region);
+        refresher.invalidateAll(region);
+        Cache<?, ?> l2 = cacheManager.getCache(L2, region);
+        if (l2 instanceof RedisCache) {
+            ((RedisCache<?, ?>) l2).resetGeneration();
+        }
         log.debug("Received cache clear message, region={}", region);
     }
 
@@ -253,37 +686,104 @@ public class RedisCacheChannel extends JedisPubSub implements CacheExpiredListen
      * 消息接收
      */
     @Override
-    public void onMessage(String channel, String message) {
+    public void onMessage(byte[] channel, byte[] message) {
+        receive(message);
+    }
+
+    /**
+     * region 的命令发布的频道
+     */
+    static String channel(CacheProp.ChannelProp prop, String region) {
+        if (!prop.isPerRegion()) {
+            return CHANNEL;
+        }
+        return CHANNEL + ":" + prop.getGroups().getOrDefault(region, region);
+    }
+
+    /**
+     * 本节点创建 region 的一级缓存后订阅该 region 的频道
+     */
+    @Override
+    public void notifyRegionCreated(String region) {
+        if (transport != null || !cacheProp.getChannel().isPerRegion()) {
+            return;
+        }
+        String channel = channel(cacheProp.getChannel(), region);
+        if (regionChannels.putIfAbsent(channel, Boolean.TRUE) == null && isSubscribed()) {
+            subscribe(channel.getBytes(StandardCharsets.UTF_8));
+            log.debug("Subscribe cache channel {}", channel);
+        }
+    }
+
+    /**
+     * 公共频道订阅成功后，补充订阅在此之前创建的 region 的频道
+     */
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+        if (Arrays.equals(channel, CHANNEL_BYTES) && !regionChannels.isEmpty()) {
+            subscribe(regionChannels.keySet().stream().map(c -> c.getBytes(StandardCharsets.UTF_8))
+                    .toArray(byte[][]::new));
+        }
+    }
+
+    /**
+     * 可能有命令丢失，清除本节点所有 region 的一级缓存
+     */
+    protected void onGap() {
+        cacheManager.regions().forEach(this::onClearCacheKey);
+    }
+
+    private void receive(byte[] message) {
         // 无效消息
-        if (message != null && message.length() < 1) {
+        if (message == null || message.length < 1) {
             log.warn("Message is empty.");
             return;
         }
 
         try {
-            Command<?> cmd = Command.parse(message.getBytes(COMMAND_CHARSET));
-            if (cmd == null) {
+            Command<?> cmd = Command.decode(message);
+            // 忽略本节点发出的命令
+            if (cmd == null || cmd.isLocalCommand()) {
                 return;
             }
+            Command.observe(cmd.getVersion());
 
-            switch (cmd.getOperator()) {
-                case Command.OPT_DELETE_KEY:
-                    onDeleteCacheKey(cmd.getRegion(), cmd.getKey());
-                    break;
-                case Command.OPT_CLEAR_KEY:
-                    onClearCacheKey(cmd.getRegion());
-                    break;
-                default:
-                    log.warn("Unknown message type = " + cmd.getOperator());
+            if (dispatcher != null) {
+                dispatcher.dispatch(cmd.getRegion(), () -> apply(cmd));
+            } else {
+                apply(cmd);
             }
         } catch (Exception e) {
             log.error("Unable to handle received msg", e);
         }
     }
 
+    private void apply(Command<?> cmd) {
+        switch (cmd.getOperator()) {
+            case Command.OPT_DELETE_KEY:
+                onDeleteCacheKey(cmd.getRegion(), cmd.getKey(), cmd.getVersion());
+                break;
+            case Command.OPT_CLEAR_KEY:
+                onClearCacheKey(cmd.getRegion());
+                break;
+            default:
+                log.warn("Unknown message type = " + cmd.getOperator());
+        }
+    }
+
     @Override
     public void close() {
         try {
+            if (publisher != null) {
+                publisher.close();
+            }
+            if (expiries != null) {
+                expiries.close();
+            }
+            if (dispatcher != null) {
+                dispatcher.close();
+            }
+            refresher.close();
             cacheManager.close();
         } catch (Exception e) {
             log.error("Cache channel close fail", e);
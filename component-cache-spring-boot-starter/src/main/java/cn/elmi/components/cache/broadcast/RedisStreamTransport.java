@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import cn.elmi.components.cache.core.props.CacheProp.StreamProp;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于 redis stream 的广播：命令以 XADD 写入长度受限的 stream，每个节点记录自己读到的最后一条命令的 ID，
+ * 断线重连后从该 ID 继续读取，补发离线期间错过的命令；该 ID 之后的命令已被裁剪时无法补发，通知接收方清除一级缓存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class RedisStreamTransport implements CommandTransport {
+
+    private static final byte[] FIELD = "c".getBytes(StandardCharsets.ISO_8859_1);
+    private static final String HEAD = "0-0";
+
+    private final RedisClient client;
+    private final StreamProp prop;
+    private final byte[] key;
+
+    private final StatefulRedisConnection<byte[], byte[]> publishing;
+    private StatefulRedisConnection<byte[], byte[]> reading;
+    private Thread reader;
+
+    private volatile boolean running;
+    private volatile String lastId;
+
+    /**
+     * @param client
+     *            redis client, shut down when the transport is closed
+     * @param prop
+     *            stream settings
+     */
+    public RedisStreamTransport(RedisClient client, StreamProp prop) {
+        this.client = client;
+        this.prop = prop;
+        this.key = prop.getKey().getBytes(StandardCharsets.UTF_8);
+        this.publishing = client.connect(ByteArrayCodec.INSTANCE);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        XAddArgs args = new XAddArgs().maxlen(prop.getMaxLen()).approximateTrimming();
+        publishing.async().xadd(key, args, Collections.singletonMap(FIELD, message)).whenComplete((id, e) -> {
+            if (e != null) {
+                log.error("Unable to publish cache command to stream " + prop.getKey(), e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver, Runnable onGap) {
+        if (running) {
+            return;
+        }
+        running = true;
+        reader = new Thread(() -> read(receiver, onGap), "cache-channel-stream");
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Reading cache commands from stream {}", prop.getKey());
+    }
+
+    private void read(Consumer<byte[]> receiver, Runnable onGap) {
+        // 指定了开始位置时同样先检查是否已被裁剪
+        boolean resumed = lastId != null;
+        while (running) {
+            try {
+                if (reading == null || !reading.isOpen()) {
+                    reading = client.connect(ByteArrayCodec.INSTANCE);
+                }
+                if (lastId == null) {
+                    lastId = tail();
+                } else if (resumed && gap()) {
+                    log.warn("Cache commands after {} were trimmed from stream {}, clear L1 cache", lastId,
+                            prop.getKey());
+                    onGap.run();
+                }
+                resumed = false;
+
+                List<StreamMessage<byte[], byte[]>> messages = reading.sync().xread(
+                        new XReadArgs().block(prop.getBlock()).count(prop.getCount()),
+                        offsets(XReadArgs.StreamOffset.from(key, lastId)));
+                for (StreamMessage<byte[], byte[]> message : messages) {
+                    dispatch(receiver, message);
+                    lastId = message.getId();
+                }
+                // 读满一批说明可能落后较多，下一轮先检查是否已被裁剪
+                resumed = messages.size() >= prop.getCount();
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.error("Read cache commands from stream " + prop.getKey() + " fail, retry later", e);
+                resumed = true;
+                pause();
+            }
+        }
+    }
+
+    private void dispatch(Consumer<byte[]> receiver, StreamMessage<byte[], byte[]> message) {
+        try {
+            for (Map.Entry<byte[], byte[]> field : message.getBody().entrySet()) {
+                receiver.accept(field.getValue());
+            }
+        } catch (Exception e) {
+            log.error("Unable to handle cache command " + message.getId(), e);
+        }
+    }
+
+    /**
+     * stream 中最新一条命令的 ID，从该命令之后开始读取
+     */
+    private String tail() {
+        List<StreamMessage<byte[], byte[]>> last = reading.sync().xrevrange(key, Range.unbounded(), Limit.from(1));
+        return last.isEmpty() ? HEAD : last.get(0).getId();
+    }
+
+    /**
+     * 最后读到的命令已不在 stream 中，说明其后的命令可能已被裁剪
+     */
+    private boolean gap() {
+        if (HEAD.equals(lastId)) {
+            return false;
+        }
+        List<StreamMessage<byte[], byte[]>> first = reading.sync().xrange(key,
+                Range.from(Range.Boundary.including(lastId), Range.Boundary.unbounded()), Limit.from(1));
+        return first.isEmpty() || !lastId.equals(first.get(0).getId());
+    }
+
+    /**
+     * xread 的 varargs 参数是泛型数组，这里显式创建，数组只包含传入的 offset，不会混入其他类型
+     */
+    @SuppressWarnings("unchecked")
+    private static XReadArgs.StreamOffset<byte[]>[] offsets(XReadArgs.StreamOffset<byte[]> offset) {
+        return (XReadArgs.StreamOffset<byte[]>[]) new XReadArgs.StreamOffset<?>[] { offset };
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(prop.getRetryInterval());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * 本节点读到的最后一条命令的 ID
+     */
+    public String getLastId() {
+        return lastId;
+    }
+
+    /**
+     * 指定开始读取的位置，在 {@link #start} 之前调用，未指定时从 stream 的最新命令之后开始；
+     * 指定的位置会先检查是否已被裁剪
+     */
+    public void resumeFrom(String id) {
+        this.lastId = id;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (reader != null) {
+                reader.interrupt();
+                reader.join(prop.getBlock() + 1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reading != null) {
+            reading.close();
+        }
+        publishing.close();
+        client.shutdown();
+    }
+
+}
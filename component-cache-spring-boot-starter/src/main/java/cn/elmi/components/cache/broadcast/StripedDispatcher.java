@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.broadcast;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 收到的命令按 region 分配到固定的单线程队列中执行，同一 region 的命令保持接收顺序，不同 region 并行处理；
+ * 队列已满时丢弃该命令并清除对应 region 的一级缓存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class StripedDispatcher implements Closeable {
+
+    private final ThreadPoolExecutor[] stripes;
+    private final Consumer<String> onOverflow;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * @param threads
+     *            number of stripes, one thread each
+     * @param queue
+     *            max pending commands per stripe
+     * @param onOverflow
+     *            called with the region when its stripe is full
+     */
+    public StripedDispatcher(int threads, int queue, Consumer<String> onOverflow) {
+        this.onOverflow = onOverflow;
+        this.stripes = new ThreadPoolExecutor[Math.max(1, threads)];
+        for (int i = 0; i < stripes.length; i++) {
+            String name = "cache-channel-dispatch-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    /**
+     * 提交 region 的命令，队列已满时在当前线程执行 onOverflow
+     */
+    public void dispatch(String region, Runnable task) {
+        long queuedAt = System.currentTimeMillis();
+        try {
+            stripe(region).execute(() -> {
+                long lag = System.currentTimeMillis() - queuedAt;
+                lastLag.set(lag);
+                maxLag.accumulateAndGet(lag, Math::max);
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("Unable to handle received command, region=" + region, e);
+                }
+            });
+            dispatched.increment();
+        } catch (RejectedExecutionException e) {
+            overflows.increment();
+            log.warn("Command queue of region {} is full, clear the region", region);
+            onOverflow.accept(region);
+        }
+    }
+
+    private ThreadPoolExecutor stripe(String region) {
+        int h = region.hashCode();
+        h ^= h >>> 16;
+        return stripes[(h & 0x7FFFFFFF) % stripes.length];
+    }
+
+    /**
+     * 已提交的命令数
+     */
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * 因队列已满被丢弃的命令数
+     */
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    /**
+     * 等待执行的命令数
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (ThreadPoolExecutor stripe : stripes) {
+            backlog += stripe.getQueue().size();
+        }
+        return backlog;
+    }
+
+    /**
+     * 最近执行的命令在队列中等待的毫秒数
+     */
+    public long getLastLag() {
+        return lastLag.get();
+    }
+
+    /**
+     * 命令在队列中等待的最大毫秒数
+     */
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+}
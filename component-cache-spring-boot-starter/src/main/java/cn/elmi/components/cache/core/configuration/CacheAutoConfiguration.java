@@ -17,15 +17,24 @@
 package cn.elmi.components.cache.core.configuration;
 
 import java.net.URL;
+import java.time.Duration;
+import java.util.Iterator;
 
+import cn.elmi.components.cache.AsyncCacheChannel;
 import cn.elmi.components.cache.CacheChannel;
 import cn.elmi.components.cache.CacheException;
+import cn.elmi.components.cache.broadcast.CommandTransport;
+import cn.elmi.components.cache.broadcast.LettuceCacheChannel;
+import cn.elmi.components.cache.broadcast.NettyPeerTransport;
+import cn.elmi.components.cache.broadcast.RedisStreamTransport;
 import cn.elmi.components.cache.core.props.RedisProp;
 import cn.elmi.components.cache.serializer.FstSerializer;
 import cn.elmi.components.cache.serializer.JavaSerializer;
+import cn.elmi.components.cache.serializer.KryoSerializer;
 import cn.elmi.components.cache.serializer.Serializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,6 +42,10 @@ import org.springframework.util.StringUtils;
 
 import cn.elmi.components.cache.core.props.CacheProp;
 
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.CacheManager;
 import redis.clients.jedis.Jedis;
@@ -72,6 +85,71 @@ public class CacheAutoConfiguration {
                         pwd, redisProp.getDbIndex());
     }
 
+    /**
+     * components.cache.async=true 时额外启用基于 lettuce 的非阻塞通道 {@link AsyncCacheChannel}，通过它发起的二级缓存读写不经过 jedis 连接池；
+     * 同步的 {@link CacheChannel} 与 RedisCache 仍然依赖上面的连接池，因此连接池始终会创建
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "components.cache", name = "async", havingValue = "true")
+    public RedisClient lettuceClient() {
+        return RedisClient.create(lettuceURI());
+    }
+
+    private RedisURI lettuceURI() {
+        RedisURI.Builder builder;
+        if (StringUtils.isEmpty(redisProp.getMaster())) {
+            builder = RedisURI.Builder.redis(redisProp.getHost(), redisProp.getPort());
+        } else {
+            Iterator<String> nodes = redisProp.getNodes().iterator();
+            String[] node = nodes.next().split(":");
+            builder = RedisURI.Builder.sentinel(node[0], Integer.parseInt(node[1]), redisProp.getMaster());
+            while (nodes.hasNext()) {
+                node = nodes.next().split(":");
+                builder.withSentinel(node[0], Integer.parseInt(node[1]));
+            }
+        }
+        if (!StringUtils.isEmpty(redisProp.getPasswd())) {
+            builder.withPassword(redisProp.getPasswd());
+        }
+        builder.withDatabase(redisProp.getDbIndex()).withTimeout(Duration.ofMillis(redisProp.getTimeout()));
+        return builder.build();
+    }
+
+    /**
+     * components.cache.channel.transport=stream 时通过 redis stream 广播命令，使用独立的 lettuce 客户端
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "components.cache.channel", name = "transport", havingValue = "stream")
+    public CommandTransport streamTransport() {
+        return new RedisStreamTransport(RedisClient.create(lettuceURI()), cacheProp.getChannel().getStream());
+    }
+
+    /**
+     * components.cache.channel.transport=peer 时节点之间直接通过 TCP 广播命令
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "components.cache.channel", name = "transport", havingValue = "peer")
+    public CommandTransport peerTransport() {
+        return new NettyPeerTransport(cacheProp.getChannel().getPeer());
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "components.cache", name = "async", havingValue = "true")
+    public StatefulRedisConnection<byte[], byte[]> lettuceConnection(RedisClient lettuceClient) {
+        return lettuceClient.connect(ByteArrayCodec.INSTANCE);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "components.cache", name = "async", havingValue = "true")
+    public AsyncCacheChannel asyncCacheChannel() {
+        return new LettuceCacheChannel();
+    }
+
     @Bean(destroyMethod = "shutdown")
     @ConditionalOnMissingBean
     public CacheManager ehcacheManager() {
@@ -92,7 +170,13 @@ public class CacheAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean
     public Serializer serializer() {
-        return "FST".equals(cacheProp.getSerializer()) ? new FstSerializer() : new JavaSerializer();
+        if ("FST".equals(cacheProp.getSerializer())) {
+            return new FstSerializer(cacheProp.getFst().getClasses());
+        }
+        if ("kryo".equalsIgnoreCase(cacheProp.getSerializer())) {
+            return new KryoSerializer(cacheProp.getKryo());
+        }
+        return new JavaSerializer();
     }
 
 }
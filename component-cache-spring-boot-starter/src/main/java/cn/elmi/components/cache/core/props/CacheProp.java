@@ -16,6 +16,10 @@
 
 package cn.elmi.components.cache.core.props;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -30,8 +34,288 @@ import lombok.Data;
 @ConfigurationProperties("components.cache")
 public class CacheProp {
 
+    /**
+     * 序列化方式：java（默认）、fst 或 kryo
+     */
     private String serializer;
     private String broadcast;
+    /**
+     * 一级缓存实现：guava（默认）或 caffeine
+     */
+    private String l1 = "guava";
+    /**
+     * 是否启用基于 lettuce 的 {@link cn.elmi.components.cache.AsyncCacheChannel}
+     */
+    private boolean async;
     private Map<String, String> regions;
+    private Map<String, PolicyProp> policies = new HashMap<>();
+    private LoadProp load = new LoadProp();
+    private BatchProp batch = new BatchProp();
+    private FstProp fst = new FstProp();
+    private KryoProp kryo = new KryoProp();
+    private RefreshProp refresh = new RefreshProp();
+    private ChannelProp channel = new ChannelProp();
+
+    /**
+     * 获取 region 的缓存策略，未配置时使用 default 的策略
+     *
+     * @param region
+     *            cache region name
+     * @return region policy
+     */
+    public PolicyProp getPolicy(String region) {
+        PolicyProp policy = policies.get(region);
+        if (policy == null) {
+            policy = policies.get("default");
+        }
+        return policy == null ? PolicyProp.DEFAULT : policy;
+    }
+
+    @Data
+    public static class PolicyProp {
+        private static final PolicyProp DEFAULT = new PolicyProp();
+
+        /**
+         * 二级缓存的过期时间（毫秒），0 表示永不过期
+         */
+        private long ttl;
+        /**
+         * 二级缓存过期时间的随机抖动上限（毫秒），避免同一批写入的 key 同时过期
+         */
+        private long ttlJitter;
+        /**
+         * 二级缓存 region 的清除策略：scan（默认，SCAN + 分批 DEL）或 generation（递增代数，旧 key 依赖 ttl 过期）
+         */
+        private String clear = "scan";
+        /**
+         * 一级缓存实现：guava、caffeine、ehcache 或 none（不使用一级缓存），为空时使用 components.cache.l1
+         */
+        private String l1;
+        /**
+         * 是否启用二级缓存（redis），仅节点本地使用的数据可以关闭
+         */
+        private boolean l2 = true;
+        /**
+         * 通过 loader 加载的值超过该时间（毫秒）后，读取时仍返回当前值并在后台重新加载，0 表示关闭
+         */
+        private long refreshAhead;
+        /**
+         * loader 加载失败时，在该时间（毫秒）内返回最后一次加载的旧值，0 表示关闭
+         */
+        private long staleGrace;
+        /**
+         * loader 返回 null 时写入负缓存标记的过期时间（毫秒），0 表示不缓存空值
+         */
+        private long nullTtl;
+        /**
+         * 一级缓存中的对象因哪些原因移除时删除二级缓存并广播失效：expired、size、explicit、replaced、collected，
+         * 默认只有超时移除；容量淘汰只影响本节点，不应清除其他节点与二级缓存中的数据
+         */
+        private List<String> propagate = new ArrayList<>(Collections.singletonList("expired"));
+        /**
+         * 二级缓存值的压缩算法：none（默认）、snappy 或 deflate，开启后仍可读取开启前写入的值
+         */
+        private String compression = "none";
+        /**
+         * 序列化结果达到该字节数时才压缩
+         */
+        private int compressThreshold = 4096;
+        /**
+         * 二级缓存中 String、数值、byte[] 及其 ArrayList 类型的值是否使用紧凑的类型标记编码，其他类型仍使用 serializer；
+         * 开启后仍可读取开启前写入的值，但关闭后无法读取开启期间写入的值
+         */
+        private boolean tagged;
+        /**
+         * 二级缓存 key 的格式：string（默认，region:I:key 等字符串）或 binary（整数 8 字节，长字符串与对象 key 为 murmur3_128 哈希），
+         * 两种格式的 key 互不相通，切换后原有的值不再命中
+         */
+        private String keyFormat = "string";
+        /**
+         * binary 格式下字符串 key 的 UTF-8 字节数超过该值时保存哈希值
+         */
+        private int keyHashThreshold = 64;
+        /**
+         * binary 格式下以哈希值保存的 key 是否随值写入完整的 key 并在读取时校验，发现冲突时当作未命中
+         */
+        private boolean keyVerify;
+    }
+
+    @Data
+    public static class FstProp {
+        /**
+         * 预先注册的类，序列化结果中只写入编号，所有节点的类及顺序必须一致
+         */
+        private List<String> classes = new ArrayList<>();
+    }
+
+    @Data
+    public static class KryoProp {
+        /**
+         * 是否只允许序列化已注册的类，未注册的类改用 java 序列化
+         */
+        private boolean registrationRequired;
+        /**
+         * 注册的类，按顺序分配 ID，所有节点必须一致；注册后序列化结果中只写入 ID 而不是类名
+         */
+        private List<String> classes = new ArrayList<>();
+        /**
+         * 每个线程的输出缓冲区初始大小
+         */
+        private int bufferSize = 4096;
+        /**
+         * 输出缓冲区扩容超过该大小后不再保留
+         */
+        private int maxRetainedBuffer = 1024 * 1024;
+    }
+
+    @Data
+    public static class LoadProp {
+        /**
+         * 等待同一 key 正在进行的加载的最长时间（毫秒）
+         */
+        private long timeout = 3000;
+    }
+
+    @Data
+    public static class ChannelProp {
+        /**
+         * 记录本节点写入一级缓存的版本的最大条目数，用于忽略比本地写入更早的失效命令
+         */
+        private long versions = 100000;
+
+        /**
+         * 广播命令的发布格式：legacy | binary，接收时两种格式都支持；<br/>
+         * 旧版本节点无法解析 binary 格式（只支持 V2 的节点也无法解析 V3），默认 legacy 以便滚动升级，
+         * 所有节点都升级后再切换为 binary
+         */
+        private String format = "legacy";
+
+        /**
+         * 广播命令的传输方式：pubsub（默认，redis 发布订阅）、stream（redis stream，断线重连后补发错过的命令）
+         * 或 peer（节点之间直接通过 TCP 发送，不经过 redis）
+         */
+        private String transport = "pubsub";
+
+        /**
+         * 是否按 region 使用独立的发布订阅频道，节点只订阅本地已创建一级缓存的 region；
+         * 公共频道仍然订阅，以接收旧版本节点的命令，需要全部节点升级后再开启
+         */
+        private boolean perRegion;
+
+        /**
+         * 开启 perRegion 后 region 所属的频道分组，同组的 region 共用一个频道，region -> group
+         */
+        private Map<String, String> groups = new HashMap<>();
+
+        private StreamProp stream = new StreamProp();
+
+        private PeerProp peer = new PeerProp();
+
+        private DispatchProp dispatch = new DispatchProp();
+    }
+
+    @Data
+    public static class PeerProp {
+        /**
+         * 本节点监听的地址
+         */
+        private String host = "0.0.0.0";
+        /**
+         * 本节点监听的端口
+         */
+        private int port = 7600;
+        /**
+         * 所有节点的地址（host:port），可以包含本节点，本节点会被跳过
+         */
+        private List<String> members = new ArrayList<>();
+        /**
+         * 与其他节点断开后重新连接的间隔（毫秒）
+         */
+        private long reconnectInterval = 1000;
+        /**
+         * 单条命令的最大字节数
+         */
+        private int maxFrameLength = 16 * 1024 * 1024;
+        /**
+         * I/O 线程数，0 表示使用 netty 的默认值
+         */
+        private int threads = 2;
+    }
+
+    @Data
+    public static class DispatchProp {
+        /**
+         * 处理收到的命令的线程数，同一 region 的命令由同一线程按顺序处理，0 表示在接收线程中直接处理
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+        /**
+         * 每个线程等待处理的命令数上限，超过时丢弃命令并清除该 region 的一级缓存
+         */
+        private int queue = 10000;
+    }
+
+    @Data
+    public static class StreamProp {
+        /**
+         * 保存广播命令的 stream
+         */
+        private String key = "cache_stream";
+        /**
+         * stream 保留的命令数上限（近似裁剪），离线期间超过该数量的命令无法补发，重连后清除一级缓存
+         */
+        private long maxLen = 100000;
+        /**
+         * 每次读取的最大命令数
+         */
+        private int count = 500;
+        /**
+         * 没有新命令时每次读取的阻塞时间（毫秒）
+         */
+        private long block = 1000;
+        /**
+         * 读取失败后重试的间隔（毫秒）
+         */
+        private long retryInterval = 1000;
+    }
+
+    @Data
+    public static class RefreshProp {
+        /**
+         * 后台刷新线程数
+         */
+        private int threads = 2;
+        /**
+         * 后台刷新任务队列长度，队列满时放弃刷新
+         */
+        private int queue = 1000;
+        /**
+         * 每个 region 最多记录的加载时间条目数
+         */
+        private long maxSize = 10000;
+    }
+
+    @Data
+    public static class BatchProp {
+        /**
+         * 批量读写 redis 时每个 pipeline 的命令数
+         */
+        private int size = 500;
+        /**
+         * 批量失效广播中每条命令携带的最大 key 数
+         */
+        private int broadcastSize = 1000;
+        /**
+         * 失效广播的合并窗口（毫秒），窗口内的失效命令按 region 合并后发布，0 表示立即发布
+         */
+        private long broadcastWindow;
+        /**
+         * 合并窗口内积累的 key 数达到该值时立即发布
+         */
+        private int broadcastMaxKeys = 10000;
+        /**
+         * 一级缓存超时移除的 key 按 region 合并后批量删除二级缓存并广播的间隔（毫秒），0 表示逐个立即处理
+         */
+        private long expireWindow = 100;
+    }
 
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.l1;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.CacheException;
+
+import lombok.Data;
+
+/**
+ * @author Arthur
+ * @since 1.0
+ */
+@Data
+public class CaffeineCache<K, V> implements Cache<K, V> {
+
+    private String region;
+    private final com.github.benmanes.caffeine.cache.Cache<K, V> cache;
+
+    public CaffeineCache(String region, com.github.benmanes.caffeine.cache.Cache<K, V> cache) {
+        this.region = region;
+        this.cache = cache;
+    }
+
+    @Override
+    public V getValue(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public Map<K, V> getValues(Collection<K> keys) {
+        return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<K, V> values) {
+        cache.putAll(values);
+    }
+
+    @Override
+    public Set<K> keys() throws CacheException {
+        return cache.asMap().keySet();
+    }
+
+    @Override
+    public void evict(K key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void evict(List<K> keys) {
+        cache.invalidateAll(keys);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.l1;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.CacheExpiredListener;
+import cn.elmi.components.cache.CacheProvider;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.utils.ApplicationContextUtil;
+
+/**
+ * 基于 Caffeine（W-TinyLFU）的一级缓存，region 配置与 guava 相同
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Component("caffeine")
+@EnableConfigurationProperties(CacheProp.class)
+public class CaffeineCacheProvider implements CacheProvider {
+
+    /**
+     * 只有 guava 支持的配置项，caffeine 解析时会报错
+     */
+    private static final List<String> GUAVA_ONLY = Arrays.asList("concurrencyLevel");
+
+    private ConcurrentHashMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    @Autowired
+    private CacheProp cacheProp;
+
+    @Override
+    public String name() {
+        return "caffeine";
+    }
+
+    @Override
+    public void close() throws IOException {
+        caches.values().forEach(Cache::clear);
+        caches.clear();
+    }
+
+    @Override
+    public <K, V> Cache<K, V> provide(String region) {
+        return caches.computeIfAbsent(region, this::newCache);
+    }
+
+    public <K, V> Cache<K, V> newCache(final String region) {
+        String defaultRegion = "default";
+        String regionConf = cacheProp.getRegions()
+                .get(cacheProp.getRegions().containsKey(region) ? region : defaultRegion);
+        CacheExpiredListener listener = ApplicationContextUtil.getBean(CacheExpiredListener.class);
+        String spec = spec(regionConf);
+        Caffeine<Object, Object> builder = Caffeine.from(spec);
+        // 重复设置 recordStats 时 caffeine 会报错
+        if (!keys(spec).contains("recordStats")) {
+            builder.recordStats();
+        }
+        // Caffeine 在 executor 中异步回调 removalListener
+        com.github.benmanes.caffeine.cache.Cache<K, V> cache = builder
+                .removalListener((K key, V value, com.github.benmanes.caffeine.cache.RemovalCause cause) -> {
+                    listener.notifyElementRemoved(region, key, cause.name().toLowerCase());
+                }).build();
+        return new CaffeineCache<K, V>(region, cache);
+    }
+
+    /**
+     * 将 guava 格式的配置转换为 caffeine 的配置：去掉 caffeine 不支持的配置项，refreshInterval 改为 refreshAfterWrite
+     */
+    static String spec(String regionConf) {
+        return Arrays.stream(regionConf.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                .filter(s -> !GUAVA_ONLY.contains(key(s)))
+                .map(s -> s.replaceFirst("^refreshInterval\\b", "refreshAfterWrite"))
+                .collect(Collectors.joining(","));
+    }
+
+    private static List<String> keys(String spec) {
+        return Arrays.stream(spec.split(",")).map(CaffeineCacheProvider::key).collect(Collectors.toList());
+    }
+
+    private static String key(String option) {
+        int i = option.indexOf('=');
+        return (i < 0 ? option : option.substring(0, i)).trim();
+    }
+
+}
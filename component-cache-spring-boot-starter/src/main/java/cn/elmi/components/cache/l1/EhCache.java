@@ -118,7 +118,7 @@ public class EhCache<K, V> extends CacheEventListenerAdapter implements Cache<K,
     @Override
     public void notifyElementExpired(Ehcache cache, Element elem) {
         if (listener != null) {
-            listener.notifyElementExpired(cache.getName(), elem.getObjectKey());
+            listener.notifyElementRemoved(cache.getName(), elem.getObjectKey(), CacheExpiredListener.CAUSE_EXPIRED);
         }
     }
 
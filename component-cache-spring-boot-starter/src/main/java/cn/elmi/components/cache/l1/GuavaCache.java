@@ -17,7 +17,9 @@
 package cn.elmi.components.cache.l1;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import cn.elmi.components.cache.CacheException;
@@ -46,7 +48,7 @@ public class GuavaCache<K, V> implements Cache<K, V> {
 
     @Override
     public void clear() {
-        cache.cleanUp();
+        cache.invalidateAll();
     }
 
     @Override
@@ -69,9 +71,19 @@ public class GuavaCache<K, V> implements Cache<K, V> {
         cache.put(key, value);
     }
 
+    @Override
+    public void putAll(Map<K, V> values) {
+        cache.putAll(values);
+    }
+
     @Override
     public V getValue(K key) {
         return cache.getIfPresent(key);
     }
 
+    @Override
+    public Map<K, V> getValues(Collection<K> keys) {
+        return cache.getAllPresent(keys);
+    }
+
 }
\ No newline at end of file
@@ -65,7 +65,7 @@ public class GuavaCacheProvider implements CacheProvider {
         CacheExpiredListener listener = ApplicationContextUtil.getBean(CacheExpiredListener.class);
         Cache<K, V> cache = new GuavaCache<K, V>(region,
                 CacheBuilder.from(regionConf).recordStats().removalListener(x -> {
-                    listener.notifyElementExpired(region, x.getKey());
+                    listener.notifyElementRemoved(region, x.getKey(), x.getCause().name().toLowerCase());
                 }).build());
         caches.put(region, cache);
         return cache;
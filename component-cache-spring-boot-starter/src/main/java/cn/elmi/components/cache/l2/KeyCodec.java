@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.l2;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * 二级缓存 key 的编码，region 前缀按代数缓存为字节，不再每次拼接字符串<br/>
+ * string 格式与原来一致：[前缀]:I:[key]、[前缀]:S:[key] 或 [前缀]:O:[key]；<br/>
+ * binary 格式为 [前缀]:[类型][key]，整数为 8 字节大端序，不超过 hashThreshold 字节的字符串直接写入 UTF-8，
+ * 更长的字符串以及其他对象写入 toString() 的 murmur3_128 哈希（16 字节），可能冲突，需要时开启校验
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class KeyCodec {
+
+    public static final String STRING = "string";
+    public static final String BINARY = "binary";
+
+    private static final byte[] NUMBER_TAG = ":I:".getBytes();
+    private static final byte[] STRING_TAG = ":S:".getBytes();
+    private static final byte[] OBJECT_TAG = ":O:".getBytes();
+
+    private static final byte LONG = 'L';
+    private static final byte NUMBER = 'N';
+    private static final byte TEXT = 'S';
+    private static final byte HASHED_TEXT = 'T';
+    private static final byte HASHED_OBJECT = 'O';
+    private static final int HASH_LEN = 16;
+
+    private static final HashFunction MURMUR3 = Hashing.murmur3_128();
+
+    private final String region;
+    private final boolean binary;
+    private final int hashThreshold;
+
+    private volatile Prefix prefix;
+
+    private static final class Prefix {
+        private final long generation;
+        private final byte[] bytes;
+
+        private Prefix(long generation, byte[] bytes) {
+            this.generation = generation;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * @param region
+     *            cache region name
+     * @param format
+     *            string or binary
+     * @param hashThreshold
+     *            max UTF-8 length of string keys written as is in binary format
+     */
+    public KeyCodec(String region, String format, int hashThreshold) {
+        this.region = region;
+        if (format == null || STRING.equalsIgnoreCase(format)) {
+            this.binary = false;
+        } else if (BINARY.equalsIgnoreCase(format)) {
+            this.binary = true;
+        } else {
+            throw new IllegalArgumentException("Unknown key format " + format + " of region " + region);
+        }
+        this.hashThreshold = hashThreshold;
+    }
+
+    /**
+     * @param generation
+     *            current generation of the region, negative when generations are not used
+     * @param key
+     *            cache key
+     * @return key stored in redis
+     */
+    public byte[] encode(long generation, Object key) {
+        byte[] head = prefix(generation);
+        return binary ? binary(head, key) : string(head, key);
+    }
+
+    /**
+     * 从 redis 中的 key 还原 key 的文本，string 格式为原来的 toString()；binary 格式的整数与字符串还原为原文，
+     * 以哈希值保存的 key 无法还原，返回 # 加上 32 位十六进制的哈希值
+     *
+     * @param generation
+     *            generation used when the key was written, negative when generations are not used
+     * @param raw
+     *            key stored in redis, must start with the prefix of the generation
+     * @return text of the key
+     */
+    public String decode(long generation, byte[] raw) {
+        int from = prefix(generation).length;
+        if (!binary) {
+            return new String(raw, from + NUMBER_TAG.length, raw.length - from - NUMBER_TAG.length);
+        }
+        int body = from + 2;
+        switch (raw[from + 1]) {
+            case LONG: {
+                long v = 0;
+                for (int i = 0; i < 8; i++) {
+                    v = (v << 8) | (raw[body + i] & 0xFF);
+                }
+                return Long.toString(v);
+            }
+            case NUMBER:
+            case TEXT:
+                return new String(raw, body, raw.length - body, StandardCharsets.UTF_8);
+            default:
+                StringBuilder sb = new StringBuilder("#");
+                for (int i = body; i < raw.length; i++) {
+                    sb.append(Character.forDigit((raw[i] >> 4) & 0xF, 16)).append(Character.forDigit(raw[i] & 0xF, 16));
+                }
+                return sb.toString();
+        }
+    }
+
+    /**
+     * key 在 binary 格式下是否以哈希值保存
+     */
+    public boolean isHashed(Object key) {
+        if (!binary || key instanceof Number) {
+            return false;
+        }
+        return !(key instanceof CharSequence) || utf8Length(key.toString()) > hashThreshold;
+    }
+
+    private byte[] prefix(long generation) {
+        Prefix p = prefix;
+        if (p == null || p.generation != generation) {
+            // 与原来的 String.getBytes() 保持一致，使用平台默认字符集
+            p = prefix = new Prefix(generation, (generation < 0 ? region : region + ":" + generation).getBytes());
+        }
+        return p.bytes;
+    }
+
+    private static byte[] string(byte[] head, Object key) {
+        byte[] tag = key instanceof Number ? NUMBER_TAG : key instanceof CharSequence ? STRING_TAG : OBJECT_TAG;
+        byte[] body = String.valueOf(key).getBytes();
+        byte[] raw = new byte[head.length + tag.length + body.length];
+        System.arraycopy(head, 0, raw, 0, head.length);
+        System.arraycopy(tag, 0, raw, head.length, tag.length);
+        System.arraycopy(body, 0, raw, head.length + tag.length, body.length);
+        return raw;
+    }
+
+    private byte[] binary(byte[] head, Object key) {
+        if (key instanceof Number && integral((Number) key)) {
+            long v = ((Number) key).longValue();
+            byte[] raw = start(head, LONG, 8);
+            for (int i = 0; i < 8; i++) {
+                raw[head.length + 2 + i] = (byte) (v >>> (56 - 8 * i));
+            }
+            return raw;
+        }
+        String text = key.toString();
+        if (key instanceof Number || key instanceof CharSequence) {
+            // ASCII 字符串直接写入，不经过中间数组
+            byte[] body = ascii(text) ? null : text.getBytes(StandardCharsets.UTF_8);
+            int len = body == null ? text.length() : body.length;
+            if (key instanceof Number || len <= hashThreshold) {
+                byte[] raw = start(head, key instanceof Number ? NUMBER : TEXT, len);
+                if (body == null) {
+                    for (int i = 0; i < len; i++) {
+                        raw[head.length + 2 + i] = (byte) text.charAt(i);
+                    }
+                } else {
+                    System.arraycopy(body, 0, raw, head.length + 2, len);
+                }
+                return raw;
+            }
+        }
+        byte[] raw = start(head, key instanceof CharSequence ? HASHED_TEXT : HASHED_OBJECT, HASH_LEN);
+        MURMUR3.hashUnencodedChars(text).writeBytesTo(raw, head.length + 2, HASH_LEN);
+        return raw;
+    }
+
+    private static byte[] start(byte[] head, byte tag, int length) {
+        byte[] raw = new byte[head.length + 2 + length];
+        System.arraycopy(head, 0, raw, 0, head.length);
+        raw[head.length] = ':';
+        raw[head.length + 1] = tag;
+        return raw;
+    }
+
+    private static boolean integral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    private static boolean ascii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int utf8Length(String s) {
+        return ascii(s) ? s.length() : s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+}
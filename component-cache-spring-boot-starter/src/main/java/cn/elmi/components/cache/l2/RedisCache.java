@@ -17,11 +17,22 @@
 package cn.elmi.components.cache.l2;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import cn.elmi.components.cache.serializer.BufferOutput;
 import cn.elmi.components.cache.serializer.Serializer;
 import org.springframework.util.CollectionUtils;
 
@@ -30,7 +41,11 @@ import cn.elmi.components.cache.Cache;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
 
 /**
  * @author Arthur
@@ -40,27 +55,117 @@ import redis.clients.util.Pool;
 @Data
 public class RedisCache<K, V> implements Cache<K, V> {
 
+    /**
+     * 通过 SCAN 分批查找并删除 region 下的 key
+     */
+    public static final String CLEAR_SCAN = "scan";
+    /**
+     * 递增 region 的代数，旧代数的 key 不再被访问，依赖 ttl 自然过期
+     */
+    public static final String CLEAR_GENERATION = "generation";
+
     private String region;
     private Pool<Jedis> pool;
     private Serializer serializer;
+    private int batchSize = 500;
+    private long ttl;
+    private long ttlJitter;
+    private String clearStrategy = CLEAR_SCAN;
+    private volatile Long generation;
+    private KeyCodec keyCodec;
+    /**
+     * 以哈希值保存的 key 是否在值之前写入完整的 key，读取时校验以发现哈希冲突
+     */
+    private boolean verifyKeys;
+    private final LongAdder collisions = new LongAdder();
+
+    private static final byte VERIFIED = (byte) 0xCB;
+
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+    private static final ThreadLocal<BufferOutput> OUTPUTS = ThreadLocal.withInitial(BufferOutput::new);
 
     public RedisCache(Pool<Jedis> pool, Serializer serializer, String region) {
         this.serializer = serializer;
         this.region = region;
         this.pool = pool;
+        this.keyCodec = new KeyCodec(region, KeyCodec.STRING, 0);
+    }
+
+    /**
+     * 每批 MGET、pipeline 与 SCAN 的数量，至少为 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * redis 中实际存储的 key，使用已经持有的连接读取代数，同一个操作不会从连接池借用第二个连接
+     */
+    private byte[] rawKey(Jedis cache, K key) {
+        return keyCodec.encode(generation(cache), key);
+    }
+
+    /**
+     * redis 中实际存储的 key，供不使用 jedis 连接池的调用方使用
+     *
+     * @param generation
+     *            region 的代数，见 {@link #getGeneration()}，不使用代数时为负数
+     */
+    public byte[] rawKey(long generation, K key) {
+        return keyCodec.encode(generation, key);
     }
 
-    private String getKeyName(K key) {
-        return region + (key instanceof Number ? ":I:" : key instanceof CharSequence ? ":S:" : ":O:") + key;
+    /**
+     * 是否按代数清除 region
+     */
+    public boolean isGenerational() {
+        return CLEAR_GENERATION.equals(clearStrategy);
+    }
+
+    /**
+     * key 的前缀，generation 策略下包含 region 当前的代数
+     */
+    private String prefix(long gen) {
+        return gen < 0 ? region : region + ":" + gen;
+    }
+
+    /**
+     * 保存 region 当前代数的 key
+     */
+    public String generationKey() {
+        return "__generation:" + region;
+    }
+
+    /**
+     * region 当前的代数，未缓存时通过调用方持有的连接读取，不使用代数时返回 -1
+     */
+    private long generation(Jedis cache) {
+        if (!isGenerational()) {
+            return -1;
+        }
+        Long gen = generation;
+        if (gen == null) {
+            String value = cache.get(generationKey());
+            gen = value == null ? 0L : Long.parseLong(value);
+            generation = gen;
+        }
+        return gen;
+    }
+
+    /**
+     * 其他节点清除了 region 后调用，下次访问时重新读取代数
+     */
+    public void resetGeneration() {
+        generation = null;
     }
 
     @Override
     public V getValue(K key) {
         try (Jedis cache = pool.getResource()) {
             if (null != key) {
-                byte[] b = cache.get(getKeyName(key).getBytes());
+                byte[] b = cache.get(rawKey(cache, key));
                 if (b != null) {
-                    return (V) serializer.deserialize(b);
+                    return decode(key, b);
                 }
             }
         } catch (Exception e) {
@@ -72,25 +177,175 @@ public class RedisCache<K, V> implements Cache<K, V> {
         return null;
     }
 
+    @Override
+    public Map<K, V> getValues(Collection<K> keys) {
+        Map<K, V> values = new HashMap<>();
+        if (CollectionUtils.isEmpty(keys)) {
+            return values;
+        }
+
+        List<K> list = new ArrayList<>(keys);
+        List<byte[]> buffers = new ArrayList<>(list.size());
+        try (Jedis cache = pool.getResource()) {
+            for (int from = 0; from < list.size(); from += batchSize) {
+                buffers.addAll(cache.mget(list.subList(from, Math.min(from + batchSize, list.size())).stream()
+                        .map(k -> rawKey(cache, k)).toArray(byte[][]::new)));
+            }
+        } catch (Exception e) {
+            log.error("Error occured when mget data from redis", e);
+            return values;
+        }
+
+        for (int i = 0; i < list.size(); i++) {
+            byte[] b = buffers.get(i);
+            if (b != null) {
+                K key = list.get(i);
+                try {
+                    V value = decode(key, b);
+                    if (value != null) {
+                        values.put(key, value);
+                    }
+                } catch (Exception e) {
+                    log.error("Error occured when deserialize data from redis", e);
+                    evict(key);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * region 默认的过期时间加上随机抖动
+     */
+    public long expiry() {
+        return ttl > 0 && ttlJitter > 0 ? ttl + ThreadLocalRandom.current().nextLong(ttlJitter + 1) : ttl;
+    }
+
     @Override
     public void put(K key, V value) {
+        put(key, value, expiry());
+    }
+
+    @Override
+    public void put(K key, V value, long ttl) {
         if (value == null) {
             evict(key);
         } else {
             try (Jedis cache = pool.getResource()) {
-                cache.set(getKeyName(key).getBytes(), serializer.serialize(value));
+                byte[] name = rawKey(cache, key);
+                if (ttl > 0) {
+                    cache.psetex(name, ttl, encode(key, value));
+                } else {
+                    cache.set(name, encode(key, value));
+                }
             } catch (Exception e) {
-                log.error(MessageFormat.format("Put {0} in redis fail", getKeyName(key)), e);
+                log.error(MessageFormat.format("Put {0} in region {1} fail", key, region), e);
             }
         }
     }
 
+    /**
+     * 序列化要写入的值，序列化过程使用线程复用的缓冲区，只在最后复制出写入 redis 的结果
+     */
+    public byte[] encode(K key, V value) throws IOException {
+        BufferOutput out = OUTPUTS.get();
+        try {
+            out.reset();
+            if (verifyKeys && keyCodec.isHashed(key)) {
+                // [VERIFIED][key 长度 4][key][值]
+                byte[] text = String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+                out.writeByte(VERIFIED);
+                out.writeInt(text.length);
+                out.write(text, 0, text.length);
+            }
+            serializer.serialize(value, out);
+            return out.toByteArray();
+        } finally {
+            if (out.capacity() > MAX_RETAINED_BUFFER) {
+                OUTPUTS.remove();
+            }
+        }
+    }
+
+    /**
+     * 反序列化读取的值，开启校验时 key 与写入时不一致（哈希冲突）返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public V decode(K key, byte[] bytes) throws IOException {
+        if (!verifyKeys || !keyCodec.isHashed(key)) {
+            return (V) serializer.deserialize(bytes);
+        }
+        if (bytes.length < 5 || bytes[0] != VERIFIED) {
+            throw new IOException("Value of hashed key " + key + " is not verifiable");
+        }
+        int len = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16) | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+        byte[] text = String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+        boolean same = len == text.length && len <= bytes.length - 5;
+        for (int i = 0; same && i < len; i++) {
+            same = bytes[5 + i] == text[i];
+        }
+        if (!same) {
+            collisions.increment();
+            log.warn("Hash collision of key {} in region {}", key, region);
+            return null;
+        }
+        return (V) serializer.deserialize(bytes, 5 + len, bytes.length - 5 - len);
+    }
+
+    /**
+     * 校验发现的哈希冲突次数
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    @Override
+    public void putAll(Map<K, V> values) {
+        putAll(values, -1);
+    }
+
+    /**
+     * @param ttl
+     *            time to live in milliseconds, negative means the region default
+     */
+    @Override
+    public void putAll(Map<K, V> values, long ttl) {
+        if (CollectionUtils.isEmpty(values)) {
+            return;
+        }
+
+        try (Jedis cache = pool.getResource()) {
+            Pipeline pipeline = cache.pipelined();
+            int count = 0;
+            for (Map.Entry<K, V> entry : values.entrySet()) {
+                if (entry.getKey() == null) {
+                    continue;
+                }
+                byte[] key = rawKey(cache, entry.getKey());
+                long expiry = ttl < 0 ? expiry() : ttl;
+                if (entry.getValue() == null) {
+                    pipeline.del(key);
+                } else if (expiry > 0) {
+                    pipeline.psetex(key, expiry, encode(entry.getKey(), entry.getValue()));
+                } else {
+                    pipeline.set(key, encode(entry.getKey(), entry.getValue()));
+                }
+                if (++count % batchSize == 0) {
+                    pipeline.sync();
+                }
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            log.error(MessageFormat.format("Put {0} keys in redis fail", values.size()), e);
+        }
+    }
+
     @Override
     public void evict(K key) {
         try (Jedis cache = pool.getResource()) {
-            cache.del(getKeyName(key));
+            cache.del(rawKey(cache, key));
         } catch (Exception e) {
-            log.error(MessageFormat.format("Delete {0} from redis fail", getKeyName(key)), e);
+            log.error(MessageFormat.format("Delete {0} of region {1} from redis fail", key, region), e);
         }
     }
 
@@ -98,7 +353,7 @@ public class RedisCache<K, V> implements Cache<K, V> {
     public void evict(List<K> keys) {
         if (!CollectionUtils.isEmpty(keys)) {
             try (Jedis cache = pool.getResource()) {
-                cache.del(keys.stream().map(k -> getKeyName(k)).toArray(String[]::new));
+                cache.del(keys.stream().map(k -> rawKey(cache, k)).toArray(byte[][]::new));
             } catch (Exception e) {
                 log.error(MessageFormat.format("Delete {0} from redis fail", keys), e);
             }
@@ -111,10 +366,16 @@ public class RedisCache<K, V> implements Cache<K, V> {
         return null;
     }
 
+    /**
+     * region 在 redis 中的 key，按 {@link KeyCodec#decode} 还原为文本
+     */
     public Set<String> redisKeys() {
+        Set<String> keys = new HashSet<>();
         try (Jedis cache = pool.getResource()) {
-            return cache.keys(region + ":*").stream().map(k -> k.substring(region.length() + 3))
-                    .collect(Collectors.toSet());
+            long gen = generation(cache);
+            scan(cache, prefix(gen) + ":*", batch -> keys.addAll(batch.stream()
+                    .map(k -> keyCodec.decode(gen, k)).collect(Collectors.toList())));
+            return keys;
         } catch (Exception e) {
             log.error("Keys of redis fail", e);
         }
@@ -124,13 +385,31 @@ public class RedisCache<K, V> implements Cache<K, V> {
     @Override
     public void clear() {
         try (Jedis cache = pool.getResource()) {
-            String[] keys = cache.keys(region + ":*").toArray(new String[0]);
-            cache.del(keys);
+            if (isGenerational()) {
+                generation = cache.incr(generationKey());
+            } else {
+                scan(cache, region + ":*", batch -> cache.del(batch.toArray(new byte[0][])));
+            }
         } catch (Exception e) {
             log.error("Clear redis fail", e);
         }
     }
 
+    /**
+     * 增量 SCAN，每批最多 batchSize 个 key，避免 KEYS 阻塞整个 redis；按字节返回，binary 格式的 key 不经过字符串转换
+     */
+    private void scan(Jedis cache, String pattern, Consumer<List<byte[]>> consumer) {
+        ScanParams params = new ScanParams().match(SafeEncoder.encode(pattern)).count(batchSize);
+        byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        do {
+            ScanResult<byte[]> result = cache.scan(cursor, params);
+            if (!result.getResult().isEmpty()) {
+                consumer.accept(result.getResult());
+            }
+            cursor = result.getCursorAsBytes();
+        } while (!Arrays.equals(ScanParams.SCAN_POINTER_START_BINARY, cursor));
+    }
+
     @Override
     public void close() {
         clear();
@@ -18,13 +18,18 @@ package cn.elmi.components.cache.l2;
 
 import java.util.concurrent.ConcurrentHashMap;
 
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.core.props.CacheProp.PolicyProp;
+import cn.elmi.components.cache.serializer.CompressingSerializer;
 import cn.elmi.components.cache.serializer.Serializer;
+import cn.elmi.components.cache.serializer.TaggedSerializer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import cn.elmi.components.cache.Cache;
 import cn.elmi.components.cache.CacheProvider;
 
+import lombok.extern.slf4j.Slf4j;
 import redis.clients.jedis.Jedis;
 import redis.clients.util.Pool;
 
@@ -32,6 +37,7 @@ import redis.clients.util.Pool;
  * @author Arthur
  * @since 1.0
  */
+@Slf4j
 @Component("redis")
 public class RedisCacheProvider implements CacheProvider {
 
@@ -41,6 +47,9 @@ public class RedisCacheProvider implements CacheProvider {
     @Autowired
     private Serializer serializer;
 
+    @Autowired
+    private CacheProp cacheProp;
+
     private ConcurrentHashMap<String, RedisCache> map = new ConcurrentHashMap<>();
 
     @Override
@@ -52,12 +61,34 @@ public class RedisCacheProvider implements CacheProvider {
     public <K, V> Cache<K, V> provide(String region) {
         RedisCache<K, V> cache = map.get(region);
         if (null == cache) {
-            cache = new RedisCache<K, V>(pool, serializer, region);
+            PolicyProp policy = cacheProp.getPolicy(region);
+            cache = new RedisCache<K, V>(pool, serializer(policy), region);
+            cache.setBatchSize(cacheProp.getBatch().getSize());
+            cache.setTtl(policy.getTtl());
+            cache.setTtlJitter(policy.getTtlJitter());
+            cache.setClearStrategy(policy.getClear());
+            cache.setKeyCodec(new KeyCodec(region, policy.getKeyFormat(), policy.getKeyHashThreshold()));
+            cache.setVerifyKeys(policy.isKeyVerify());
+            if (RedisCache.CLEAR_GENERATION.equals(cache.getClearStrategy()) && cache.getTtl() <= 0) {
+                log.warn("Region {} clears by generation without ttl, stale keys will never expire", region);
+            }
             map.put(region, cache);
         }
         return cache;
     }
 
+    /**
+     * region 配置了压缩时为每个 region 使用独立的压缩装饰器，分别统计压缩率；类型标记编码在压缩之前
+     */
+    private Serializer serializer(PolicyProp policy) {
+        Serializer s = policy.isTagged() ? new TaggedSerializer(serializer) : serializer;
+        String compression = policy.getCompression();
+        if (compression == null || "none".equalsIgnoreCase(compression)) {
+            return s;
+        }
+        return new CompressingSerializer(s, compression, policy.getCompressThreshold());
+    }
+
     @Override
     public void close() {
         pool.destroy();
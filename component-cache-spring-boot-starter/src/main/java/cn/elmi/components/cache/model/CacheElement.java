@@ -31,6 +31,10 @@ public class CacheElement<K, V> {
     private K key;
     private V value;
     private byte level;
+    /**
+     * 命中了负缓存：key 对应的数据已确认不存在，区别于未缓存的冷 miss
+     */
+    private boolean absent;
 
     @Override
     public String toString() {
@@ -16,18 +16,30 @@
 
 package cn.elmi.components.cache.model;
 
+import cn.elmi.components.cache.serializer.BufferOutput;
 import cn.elmi.components.cache.serializer.Serializer;
+import cn.elmi.components.cache.serializer.TaggedSerializer;
 import cn.elmi.components.cache.utils.ApplicationContextUtil;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 命令消息封装 格式： 第1个字节为命令代码，长度1 [OPT] 第2、3个字节为region长度，长度2 [R_LEN] 第4、N 为
  * region值，长度为 [R_LEN] 第N+1、N+2 为 key 长度，长度2 [K_LEN] 第N+3、M为 key值，长度为 [K_LEN]
+ * 第M+1、M+8 为命令版本 [VERSION]，旧版本的节点忽略该字段，解析旧版本的命令时版本为 0
+ * <p>
+ * 二进制格式（{@link #toBinary()}），整数均为大端序：[MAGIC 1] [FORMAT 1] [SRC 4] [OPT 1] [VERSION 8] [R_LEN 2]
+ * [REGION] [K_LEN 4] [KEY]，K_LEN 为 0 表示 key 为空，总长度必须与各字段长度一致。
+ * FORMAT 为 3 时 KEY 由 {@link TaggedSerializer} 编码，String、数值等 key 不经过 Serializer；FORMAT 为 2 时 KEY
+ * 由 Serializer 编码，仍可接收。<br/>
+ * 旧格式以字符串发布，jedis 按 UTF-8 编码，首字节不会是 MAGIC，因此 {@link #decode(byte[])} 可以同时接收两种格式
  *
  * @author Arthur
  * @since 1.0
@@ -40,11 +52,28 @@ public class Command<K> {
     public final static byte OPT_DELETE_KEY = 0x01; // 删除缓存
     public final static byte OPT_CLEAR_KEY = 0x02; // 清除缓存
 
+    public final static byte MAGIC = (byte) 0xCA; // 二进制格式标识
+    public final static byte FORMAT_V2 = 0x02; // 二进制格式版本，key 由 Serializer 编码
+    public final static byte FORMAT_V3 = 0x03; // 二进制格式版本，key 按类型标记编码
+    private final static int HEADER_LEN = 1 + 1 + 4 + 1 + 8 + 2;
+    private final static int MAX_RETAINED_BUFFER = 1024 * 1024;
+    private final static ThreadLocal<BufferOutput> OUTPUTS = ThreadLocal.withInitial(BufferOutput::new);
+
+    /**
+     * 混合逻辑时钟：不小于当前毫秒数，严格递增，并且不小于收到的其他节点命令的版本
+     */
+    private final static AtomicLong CLOCK = new AtomicLong();
+
     private int src;
     private byte operator;
     private String region;
     private K key;
-    private static Serializer serializer = ApplicationContextUtil.getBean(Serializer.class);
+    /**
+     * 发出命令时的版本，旧版本节点发出的命令没有版本，解析为 0
+     */
+    private long version;
+    private static volatile Serializer serializer;
+    private static volatile TaggedSerializer keyCodec;
 
     private static int genRandomSrc() {
         long ct = System.currentTimeMillis();
@@ -56,6 +85,7 @@ public class Command<K> {
         this.src = SRC_ID;
         this.operator = o;
         this.region = r;
+        this.version = nextVersion();
     }
 
     public Command(byte o, String r, K k) {
@@ -63,10 +93,34 @@ public class Command<K> {
         this.key = k;
     }
 
+    private static Serializer serializer() {
+        Serializer s = serializer;
+        if (s == null) {
+            s = serializer = ApplicationContextUtil.getBean(Serializer.class);
+        }
+        return s;
+    }
+
+    private static TaggedSerializer keyCodec() {
+        TaggedSerializer codec = keyCodec;
+        if (codec == null) {
+            codec = keyCodec = new TaggedSerializer(serializer());
+        }
+        return codec;
+    }
+
+    /**
+     * 指定 key 的序列化方式，未指定时使用容器中的 Serializer（在 Spring 容器外编解码命令时使用）
+     */
+    public static void setSerializer(Serializer s) {
+        serializer = s;
+        keyCodec = null;
+    }
+
     public byte[] toBuffers() {
         byte[] keyBuffers = null;
         try {
-            keyBuffers = serializer.serialize(key);
+            keyBuffers = serializer().serialize(key);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -74,7 +128,7 @@ public class Command<K> {
         int r_len = region.getBytes().length;
         int k_len = keyBuffers.length;
 
-        byte[] buffers = new byte[11 + r_len + k_len];
+        byte[] buffers = new byte[19 + r_len + k_len];
         int idx = 0;
         System.arraycopy(int2bytes(this.src), 0, buffers, idx, 4);
         idx += 4;
@@ -87,6 +141,9 @@ public class Command<K> {
         System.arraycopy(int2bytes(k_len), 0, buffers, idx, 4);
         idx += 4;
         System.arraycopy(keyBuffers, 0, buffers, idx, k_len);
+        idx += k_len;
+        System.arraycopy(int2bytes((int) version), 0, buffers, idx, 4);
+        System.arraycopy(int2bytes((int) (version >>> 32)), 0, buffers, idx + 4, 4);
         return buffers;
     }
 
@@ -103,12 +160,13 @@ public class Command<K> {
                 int k_len = bytes2int(Arrays.copyOfRange(buffers, idx, idx + 4));
                 idx += 4;
                 if (k_len > 0) {
-                    // String key = new String(buffers, idx, k_len);
-                    byte[] keyBuffers = new byte[k_len];
-                    System.arraycopy(buffers, idx, keyBuffers, 0, k_len);
-                    K key = (K) serializer.deserialize(keyBuffers);
+                    K key = (K) serializer().deserialize(buffers, idx, k_len);
                     cmd = new Command<K>(opt, region, key);
                     cmd.src = bytes2int(buffers);
+                    idx += k_len;
+                    cmd.version = buffers.length >= idx + 8 ? (bytes2int(Arrays.copyOfRange(buffers, idx, idx + 4))
+                            & 0xFFFFFFFFL) | ((long) bytes2int(Arrays.copyOfRange(buffers, idx + 4, idx + 8)) << 32)
+                            : 0L;
                 }
             }
         } catch (Exception e) {
@@ -117,6 +175,97 @@ public class Command<K> {
         return cmd;
     }
 
+    /**
+     * 编码为二进制格式，序列化失败时返回 null
+     */
+    public byte[] toBinary() {
+        byte[] regionBuffers = region.getBytes(StandardCharsets.UTF_8);
+        if (regionBuffers.length > 0xFFFF) {
+            log.error("Region name is too long, region={}", region);
+            return null;
+        }
+
+        // key 直接序列化到复用的缓冲区中，长度在写完后回填，整个命令只在最后复制一次
+        BufferOutput out = OUTPUTS.get();
+        try {
+            out.reset();
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_V3);
+            out.writeInt(src);
+            out.writeByte(operator);
+            out.writeLong(version);
+            out.writeShort(regionBuffers.length);
+            out.write(regionBuffers, 0, regionBuffers.length);
+            int k_len = out.skip(4);
+            if (key != null) {
+                keyCodec().serialize(key, out);
+            }
+            out.putInt(k_len, out.size() - k_len - 4);
+            return out.toByteArray();
+        } catch (IOException e) {
+            log.error("Unable to serialize command key, region=" + region, e);
+            return null;
+        } finally {
+            if (out.capacity() > MAX_RETAINED_BUFFER) {
+                OUTPUTS.remove();
+            }
+        }
+    }
+
+    /**
+     * 解码收到的消息，兼容二进制格式与旧的字符串格式，无法解析时返回 null
+     */
+    public static <K> Command<K> decode(byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        if (message[0] == MAGIC) {
+            return parseBinary(message);
+        }
+        // 旧格式：命令按 ISO-8859-1 转为字符串后以 UTF-8 发布
+        return parse(new String(message, StandardCharsets.UTF_8).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Command<K> parseBinary(byte[] buffers) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(buffers);
+            if (buf.remaining() < HEADER_LEN || buf.get() != MAGIC) {
+                return null;
+            }
+            byte format = buf.get();
+            if (format != FORMAT_V2 && format != FORMAT_V3) {
+                log.warn("Unsupported command format {}", format);
+                return null;
+            }
+            int src = buf.getInt();
+            byte opt = buf.get();
+            long version = buf.getLong();
+            int r_len = buf.getShort() & 0xFFFF;
+            if (r_len == 0 || buf.remaining() < r_len + 4) {
+                log.warn("Malformed command, region length={}, remaining={}", r_len, buf.remaining());
+                return null;
+            }
+            String region = new String(buffers, buf.position(), r_len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + r_len);
+            int k_len = buf.getInt();
+            if (k_len < 0 || k_len != buf.remaining()) {
+                log.warn("Malformed command, key length={}, remaining={}", k_len, buf.remaining());
+                return null;
+            }
+            Serializer codec = format == FORMAT_V3 ? keyCodec() : serializer();
+            K key = k_len == 0 ? null : (K) codec.deserialize(buffers, buf.position(), k_len);
+
+            Command<K> cmd = new Command<>(opt, region, key);
+            cmd.src = src;
+            cmd.version = version;
+            return cmd;
+        } catch (Exception e) {
+            log.error("Unabled to parse received command.", e);
+            return null;
+        }
+    }
+
     private static byte[] int2bytes(int i) {
         byte[] b = new byte[4];
 
@@ -140,4 +289,18 @@ public class Command<K> {
         return this.src == SRC_ID;
     }
 
+    /**
+     * 生成新的版本号
+     */
+    public static long nextVersion() {
+        return CLOCK.updateAndGet(last -> Math.max(System.currentTimeMillis(), last + 1));
+    }
+
+    /**
+     * 收到其他节点的命令后推进本地时钟，保证之后本地写入的版本大于已收到的失效命令
+     */
+    public static void observe(long version) {
+        CLOCK.accumulateAndGet(version, Math::max);
+    }
+
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.model;
+
+import java.io.Serializable;
+
+import lombok.Getter;
+
+/**
+ * 负缓存标记，表示 key 对应的数据确定不存在，在 expireAt 之后失效
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Getter
+public final class Tombstone implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long expireAt;
+
+    public Tombstone(long ttl) {
+        this.expireAt = System.currentTimeMillis() + ttl;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expireAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Tombstone(expireAt=" + expireAt + ")";
+    }
+
+}
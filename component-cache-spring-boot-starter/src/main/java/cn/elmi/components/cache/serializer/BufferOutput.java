@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.serializer;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 可复用的输出缓冲区，非线程安全；与 ByteArrayOutputStream 不同，可以直接访问底层数组、回填已写入的内容，
+ * reset 后复用已分配的空间
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class BufferOutput extends OutputStream {
+
+    private byte[] buf;
+    private int count;
+
+    public BufferOutput() {
+        this(256);
+    }
+
+    public BufferOutput(int capacity) {
+        this.buf = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * 保证还能写入 n 个字节
+     */
+    public void ensureFree(int n) {
+        if (count + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureFree(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureFree(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    public void writeByte(int b) {
+        write(b);
+    }
+
+    /**
+     * 大端序
+     */
+    public void writeShort(int v) {
+        ensureFree(2);
+        buf[count++] = (byte) (v >>> 8);
+        buf[count++] = (byte) v;
+    }
+
+    /**
+     * 大端序
+     */
+    public void writeInt(int v) {
+        ensureFree(4);
+        putInt(count, v);
+        count += 4;
+    }
+
+    /**
+     * 大端序
+     */
+    public void writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    /**
+     * 在已写入的位置回填一个 int（大端序）
+     */
+    public void putInt(int index, int v) {
+        buf[index] = (byte) (v >>> 24);
+        buf[index + 1] = (byte) (v >>> 16);
+        buf[index + 2] = (byte) (v >>> 8);
+        buf[index + 3] = (byte) v;
+    }
+
+    /**
+     * 跳过 n 个字节，稍后回填
+     */
+    public int skip(int n) {
+        ensureFree(n);
+        int index = count;
+        count += n;
+        return index;
+    }
+
+    /**
+     * 直接写入底层数组后推进写入位置
+     */
+    public void advance(int n) {
+        count += n;
+    }
+
+    public byte[] array() {
+        return buf;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * 丢弃 size 之后写入的内容
+     */
+    public void truncate(int size) {
+        if (size < count) {
+            count = size;
+        }
+    }
+
+    /**
+     * 底层数组的容量
+     */
+    public int capacity() {
+        return buf.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * 已写入内容的视图，不复制
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buf, 0, count);
+    }
+
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * 压缩序列化结果的装饰器：超过阈值的结果按指定算法压缩，压缩后没有变小时保存原始结果。<br/>
+ * 结果前两个字节为 [MAGIC][算法]，没有该头部的数据（开启压缩前写入的）按原始结果处理，因此可以与已有数据共存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class CompressingSerializer implements Serializer {
+
+    public static final String SNAPPY = "snappy";
+    public static final String DEFLATE = "deflate";
+
+    private static final byte MAGIC = (byte) 0xC5;
+    private static final byte RAW = 0;
+    private static final byte ALG_SNAPPY = 1;
+    private static final byte ALG_DEFLATE = 2;
+    private static final int HEADER = 2;
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    private final Serializer serializer;
+    private final byte algorithm;
+    private final int threshold;
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    private final ThreadLocal<BufferOutput> scratches = ThreadLocal.withInitial(BufferOutput::new);
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    /**
+     * @param serializer
+     *            serializer to decorate
+     * @param algorithm
+     *            snappy or deflate
+     * @param threshold
+     *            serialized size in bytes from which values are compressed
+     */
+    public CompressingSerializer(Serializer serializer, String algorithm, int threshold) {
+        this.serializer = serializer;
+        if (SNAPPY.equalsIgnoreCase(algorithm)) {
+            this.algorithm = ALG_SNAPPY;
+        } else if (DEFLATE.equalsIgnoreCase(algorithm)) {
+            this.algorithm = ALG_DEFLATE;
+        } else {
+            throw new IllegalArgumentException("Unknown compression algorithm " + algorithm);
+        }
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws IOException {
+        BufferOutput out = new BufferOutput();
+        serialize(obj, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void serialize(Object obj, BufferOutput out) throws IOException {
+        BufferOutput raw = scratches.get();
+        raw.reset();
+        try {
+            serializer.serialize(obj, raw);
+            int n = raw.size();
+            if (n >= threshold) {
+                int from = out.size();
+                long start = System.nanoTime();
+                boolean packed = algorithm == ALG_SNAPPY ? snappy(raw.array(), n, out) : deflate(raw.array(), n, out);
+                compressNanos.add(System.nanoTime() - start);
+                if (packed) {
+                    compressed.increment();
+                    rawBytes.add(n);
+                    storedBytes.add(out.size() - from);
+                    return;
+                }
+                out.truncate(from);
+            }
+            skipped.increment();
+            out.ensureFree(HEADER + n);
+            out.writeByte(MAGIC);
+            out.writeByte(RAW);
+            out.write(raw.array(), 0, n);
+        } finally {
+            if (raw.capacity() > MAX_RETAINED_BUFFER) {
+                scratches.remove();
+            }
+        }
+    }
+
+    /**
+     * 压缩后没有变小时返回 false，out 中已写入的内容由调用方丢弃
+     */
+    private boolean snappy(byte[] raw, int n, BufferOutput out) {
+        out.ensureFree(HEADER + Snappy.maxCompressedLength(n));
+        out.writeByte(MAGIC);
+        out.writeByte(ALG_SNAPPY);
+        int len = Snappy.compress(raw, 0, n, out.array(), out.size());
+        out.advance(len);
+        return len < n;
+    }
+
+    /**
+     * [MAGIC][ALG][原始长度 4][deflate 数据]
+     */
+    private boolean deflate(byte[] raw, int n, BufferOutput out) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw, 0, n);
+        deflater.finish();
+        out.ensureFree(HEADER + 4 + n);
+        out.writeByte(MAGIC);
+        out.writeByte(ALG_DEFLATE);
+        out.writeInt(n);
+        int limit = out.size() + n - 4;
+        while (!deflater.finished() && out.size() < limit) {
+            out.advance(deflater.deflate(out.array(), out.size(), limit - out.size()));
+        }
+        return deflater.finished();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return serializer.deserialize(null);
+        }
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        if (length < HEADER || bytes[offset] != MAGIC) {
+            return serializer.deserialize(bytes, offset, length);
+        }
+        switch (bytes[offset + 1]) {
+            case RAW:
+                return serializer.deserialize(bytes, offset + HEADER, length - HEADER);
+            case ALG_SNAPPY:
+            case ALG_DEFLATE:
+                long start = System.nanoTime();
+                byte[] raw;
+                try {
+                    raw = bytes[offset + 1] == ALG_SNAPPY
+                            ? Snappy.uncompress(bytes, offset + HEADER, length - HEADER)
+                            : inflate(bytes, offset, length);
+                } catch (CorruptionException | DataFormatException e) {
+                    throw new IOException("Decompress cached value fail", e);
+                }
+                decompressNanos.add(System.nanoTime() - start);
+                decompressed.increment();
+                return serializer.deserialize(raw);
+            default:
+                return serializer.deserialize(bytes, offset, length);
+        }
+    }
+
+    private byte[] inflate(byte[] bytes, int offset, int size) throws DataFormatException {
+        int length = ByteBuffer.wrap(bytes, offset + HEADER, 4).getInt();
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, offset + HEADER + 4, size - HEADER - 4);
+        byte[] raw = new byte[length];
+        int len = 0;
+        while (len < length && !inflater.finished()) {
+            int n = inflater.inflate(raw, len, length - len);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new DataFormatException("Truncated deflate data");
+            }
+            len += n;
+        }
+        return raw;
+    }
+
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * 压缩保存的值的个数
+     */
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    /**
+     * 未达到阈值或压缩后没有变小而保存原始结果的个数
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * 压缩后的大小与原始大小的比例，越小越好
+     */
+    public double getRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1.0 : (double) storedBytes.sum() / raw;
+    }
+
+    /**
+     * 压缩保存的值节省的字节数
+     */
+    public long getSavedBytes() {
+        return rawBytes.sum() - storedBytes.sum();
+    }
+
+    /**
+     * 压缩耗费的总时间（纳秒），包括压缩后没有变小的值
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    /**
+     * 解压的值的个数
+     */
+    public long getDecompressed() {
+        return decompressed.sum();
+    }
+
+    /**
+     * 解压耗费的总时间（纳秒）
+     */
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+}
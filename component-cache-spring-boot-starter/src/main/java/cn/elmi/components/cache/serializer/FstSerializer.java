@@ -16,32 +16,75 @@
 
 package cn.elmi.components.cache.serializer;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
+import de.ruedigermoeller.serialization.FSTConfiguration;
 import de.ruedigermoeller.serialization.FSTObjectInput;
 import de.ruedigermoeller.serialization.FSTObjectOutput;
 import net.sf.ehcache.CacheException;
 
 /**
+ * 所有线程共享同一个 FSTConfiguration（缓存类的元信息），每个线程复用自己的 FSTObjectOutput/FSTObjectInput。<br/>
+ * 预先注册的类在序列化结果中只写入编号，所有节点注册的类及顺序必须一致
+ *
  * @author Arthur
  * @since 1.0
  */
 public class FstSerializer implements Serializer {
 
+    /**
+     * 输出缓冲区扩容超过该大小后不再保留
+     */
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final FSTConfiguration conf;
+    private final ThreadLocal<FSTObjectOutput> outputs;
+    private final ThreadLocal<FSTObjectInput> inputs;
+
+    public FstSerializer() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param registered
+     *            class names registered in order
+     */
+    public FstSerializer(List<String> registered) {
+        this.conf = FSTConfiguration.createDefaultConfiguration();
+        if (!registered.isEmpty()) {
+            conf.registerClass(Registrations.classes(registered).toArray(new Class<?>[0]));
+        }
+        this.outputs = ThreadLocal.withInitial(() -> new FSTObjectOutput(conf));
+        this.inputs = ThreadLocal.withInitial(() -> new FSTObjectInput(conf));
+    }
+
     @Override
     public byte[] serialize(Object obj) throws IOException {
-        ByteArrayOutputStream out = null;
-        FSTObjectOutput fout = null;
+        FSTObjectOutput out = outputs.get();
         try {
-            out = new ByteArrayOutputStream();
-            fout = new FSTObjectOutput(out);
+            out.resetForReUse();
+            out.writeObject(obj);
+            return out.getCopyOfWrittenBuffer();
+        } finally {
+            if (out.getBuffer().length > MAX_RETAINED_BUFFER) {
+                outputs.remove();
+            }
+        }
+    }
+
+    @Override
+    public void serialize(Object obj, BufferOutput out) throws IOException {
+        FSTObjectOutput fout = outputs.get();
+        try {
+            fout.resetForReUse();
             fout.writeObject(obj);
-            return out.toByteArray();
+            out.write(fout.getBuffer(), 0, fout.getWritten());
         } finally {
-            if (fout != null) {
-                fout.close();
+            if (fout.getBuffer().length > MAX_RETAINED_BUFFER) {
+                outputs.remove();
             }
         }
     }
@@ -51,16 +94,27 @@ public class FstSerializer implements Serializer {
         if (bytes == null || bytes.length == 0) {
             return null;
         }
-        FSTObjectInput in = null;
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        FSTObjectInput in = inputs.get();
         try {
-            in = new FSTObjectInput(new ByteArrayInputStream(bytes));
-            return in.readObject();
+            in.resetForReuseUseArray(bytes, offset, length);
+            Object obj = in.readObject();
+            // 不再引用调用方的数组
+            in.resetForReuseUseArray(EMPTY, 0, 0);
+            return obj;
         } catch (ClassNotFoundException e) {
             throw new CacheException(e);
-        } finally {
-            if (in != null) {
-                in.close();
-            }
+        } catch (RuntimeException e) {
+            // 解析失败后不再复用该实例
+            inputs.remove();
+            throw e;
         }
     }
 
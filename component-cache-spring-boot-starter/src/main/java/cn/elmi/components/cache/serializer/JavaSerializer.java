@@ -45,14 +45,29 @@ public class JavaSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, BufferOutput out) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(obj);
+        }
+    }
+
     @Override
     public Object deserialize(byte[] bits) throws IOException {
         if (bits == null || bits.length == 0) {
             return null;
         }
+        return deserialize(bits, 0, bits.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bits, int offset, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
         ObjectInputStream ois = null;
         try {
-            ByteArrayInputStream bais = new ByteArrayInputStream(bits);
+            ByteArrayInputStream bais = new ByteArrayInputStream(bits, offset, length);
             ois = new ObjectInputStream(bais);
             return ois.readObject();
         } catch (ClassNotFoundException e) {
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.serializer;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
+
+import cn.elmi.components.cache.core.props.CacheProp.KryoProp;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于 kryo 的序列化：Kryo 实例放在池中复用，每个线程复用自己的 Output/Input 缓冲区。<br/>
+ * 注册的类按配置顺序分配 ID，所有节点的配置必须一致；开启 registrationRequired 时，未注册的类使用 java 序列化，
+ * 序列化结果的第一个字节标记使用的方式
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class KryoSerializer implements Serializer {
+
+    private static final byte KRYO = 0;
+    private static final byte JAVA = 1;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final KryoPool pool;
+    private final JavaSerializer fallback = new JavaSerializer();
+    private final int maxRetainedBuffer;
+
+    private final ThreadLocal<Output> outputs;
+    private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(Input::new);
+
+    public KryoSerializer(KryoProp prop) {
+        List<Class<?>> classes = Registrations.classes(prop.getClasses());
+        this.pool = new KryoPool.Builder(() -> {
+            Kryo kryo = new Kryo();
+            kryo.setRegistrationRequired(prop.isRegistrationRequired());
+            // 没有无参构造函数的类直接实例化
+            kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            for (Class<?> clazz : classes) {
+                kryo.register(clazz);
+            }
+            return kryo;
+        }).softReferences().build();
+        this.maxRetainedBuffer = prop.getMaxRetainedBuffer();
+        this.outputs = ThreadLocal.withInitial(() -> new Output(prop.getBufferSize(), -1));
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws IOException {
+        Output output = outputs.get();
+        Kryo kryo = pool.borrow();
+        try {
+            output.clear();
+            output.writeByte(KRYO);
+            kryo.writeClassAndObject(output, obj);
+            return output.toBytes();
+        } catch (KryoException | IllegalArgumentException e) {
+            if (!kryo.isRegistrationRequired()) {
+                throw new IOException("Kryo serialize fail", e);
+            }
+            log.debug("Serialize {} with java serialization", obj.getClass().getName());
+            byte[] bytes = fallback.serialize(obj);
+            byte[] tagged = new byte[bytes.length + 1];
+            tagged[0] = JAVA;
+            System.arraycopy(bytes, 0, tagged, 1, bytes.length);
+            return tagged;
+        } finally {
+            pool.release(kryo);
+            // 序列化过大对象后不保留扩容的缓冲区
+            if (output.getBuffer().length > maxRetainedBuffer) {
+                outputs.remove();
+            }
+        }
+    }
+
+    @Override
+    public void serialize(Object obj, BufferOutput out) throws IOException {
+        Output output = outputs.get();
+        Kryo kryo = pool.borrow();
+        try {
+            output.clear();
+            kryo.writeClassAndObject(output, obj);
+            out.writeByte(KRYO);
+            out.write(output.getBuffer(), 0, output.position());
+        } catch (KryoException | IllegalArgumentException e) {
+            if (!kryo.isRegistrationRequired()) {
+                throw new IOException("Kryo serialize fail", e);
+            }
+            log.debug("Serialize {} with java serialization", obj.getClass().getName());
+            out.writeByte(JAVA);
+            fallback.serialize(obj, out);
+        } finally {
+            pool.release(kryo);
+            if (output.getBuffer().length > maxRetainedBuffer) {
+                outputs.remove();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+        if (bytes[offset] == JAVA) {
+            return fallback.deserialize(bytes, offset + 1, length - 1);
+        }
+        Input input = inputs.get();
+        Kryo kryo = pool.borrow();
+        try {
+            // kryo 读取 ASCII 字符串时会临时修改输入数组，同一个数组不能被多个线程同时反序列化
+            input.setBuffer(bytes, offset + 1, length - 1);
+            return kryo.readClassAndObject(input);
+        } catch (KryoException e) {
+            throw new IOException("Kryo deserialize fail", e);
+        } finally {
+            input.setBuffer(EMPTY);
+            pool.release(kryo);
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 package cn.elmi.components.cache.serializer;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author Arthur
@@ -42,4 +43,34 @@ public interface Serializer {
      */
     Object deserialize(byte[] bytes) throws IOException;
 
+    /**
+     * 序列化并追加到可复用的缓冲区，默认通过 {@link #serialize(Object)} 后复制；实现类应直接写入 out 以避免中间数组
+     *
+     * @param obj
+     * @param out
+     * @throws IOException
+     */
+    default void serialize(Object obj, BufferOutput out) throws IOException {
+        byte[] bytes = serialize(obj);
+        if (bytes != null) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 从数组的指定区间反序列化，默认复制该区间后调用 {@link #deserialize(byte[])}
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException
+     */
+    default Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        if (offset == 0 && length == bytes.length) {
+            return deserialize(bytes);
+        }
+        return deserialize(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
 }
@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.serializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按类型标记编码的装饰器：String、基本类型的包装类、byte[] 以及只包含这些类型的 ArrayList 使用紧凑的手写编码，
+ * 其他对象交给被装饰的序列化方式。<br/>
+ * 结果前两个字节为 [MAGIC][类型]，没有该头部的数据（启用前写入的）交给被装饰的序列化方式处理，因此可以与已有数据共存
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class TaggedSerializer implements Serializer {
+
+    private static final byte MAGIC = (byte) 0xC7;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+    private static final byte CHAR = 8;
+    private static final byte FLOAT = 9;
+    private static final byte DOUBLE = 10;
+    private static final byte BYTES = 11;
+    private static final byte LIST = 12;
+    private static final byte OBJECT = 13;
+
+    private final Serializer serializer;
+
+    /**
+     * @param serializer
+     *            serializer for values without a compact encoding
+     */
+    public TaggedSerializer(Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    public byte[] serialize(Object obj) throws IOException {
+        BufferOutput out = new BufferOutput(32);
+        serialize(obj, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void serialize(Object obj, BufferOutput out) throws IOException {
+        out.writeByte(MAGIC);
+        if (!write(obj, out)) {
+            out.writeByte(OBJECT);
+            serializer.serialize(obj, out);
+        }
+    }
+
+    /**
+     * 写入有紧凑编码的值，其他类型返回 false 且不写入任何内容
+     */
+    private static boolean write(Object obj, BufferOutput out) {
+        if (obj == null) {
+            out.writeByte(NULL);
+        } else if (obj instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) obj, out);
+        } else if (obj instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(zigzag((Long) obj), out);
+        } else if (obj instanceof Integer) {
+            out.writeByte(INT);
+            writeVarLong(zigzag((Integer) obj), out);
+        } else if (obj instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) obj);
+        } else if (obj instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) obj);
+        } else if (obj instanceof Boolean) {
+            out.writeByte((Boolean) obj ? TRUE : FALSE);
+        } else if (obj instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeShort((Character) obj);
+        } else if (obj instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) obj));
+        } else if (obj instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) obj));
+        } else if (obj instanceof byte[]) {
+            byte[] bytes = (byte[]) obj;
+            out.writeByte(BYTES);
+            writeVarLong(bytes.length, out);
+            out.write(bytes, 0, bytes.length);
+        } else if (obj.getClass() == ArrayList.class) {
+            // 只处理 ArrayList，其他 List 实现交给被装饰的序列化方式以保持反序列化后的类型
+            List<?> list = (List<?>) obj;
+            int from = out.size();
+            out.writeByte(LIST);
+            writeVarLong(list.size(), out);
+            for (Object element : list) {
+                if (!write(element, out)) {
+                    out.truncate(from);
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeString(String s, BufferOutput out) {
+        int len = s.length();
+        int i = 0;
+        while (i < len && s.charAt(i) < 0x80) {
+            i++;
+        }
+        if (i < len) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length, out);
+            out.write(bytes, 0, bytes.length);
+            return;
+        }
+        // ASCII 字符串不经过中间数组
+        writeVarLong(len, out);
+        out.ensureFree(len);
+        byte[] buf = out.array();
+        int pos = out.size();
+        for (i = 0; i < len; i++) {
+            buf[pos + i] = (byte) s.charAt(i);
+        }
+        out.advance(len);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static void writeVarLong(long v, BufferOutput out) {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return serializer.deserialize(null);
+        }
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+        if (length < 2 || bytes[offset] != MAGIC) {
+            return serializer.deserialize(bytes, offset, length);
+        }
+        if (bytes[offset + 1] == OBJECT) {
+            return serializer.deserialize(bytes, offset + 2, length - 2);
+        }
+        Reader reader = new Reader(bytes, offset + 1, offset + length);
+        try {
+            Object value = reader.read();
+            if (reader.pos != reader.end) {
+                throw new IOException("Unexpected trailing bytes: " + (reader.end - reader.pos));
+            }
+            return value;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated tagged value", e);
+        }
+    }
+
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        private Reader(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        private byte next() {
+            if (pos >= end) {
+                throw new ArrayIndexOutOfBoundsException(pos);
+            }
+            return buf[pos++];
+        }
+
+        private Object read() throws IOException {
+            byte tag = next();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING: {
+                    int len = length();
+                    String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+                    pos += len;
+                    return s;
+                }
+                case INT:
+                    return (int) unzigzag(varLong());
+                case LONG:
+                    return unzigzag(varLong());
+                case SHORT:
+                    return (short) readShort();
+                case BYTE:
+                    return next();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case CHAR:
+                    return (char) readShort();
+                case FLOAT:
+                    return Float.intBitsToFloat((int) readFixed(4));
+                case DOUBLE:
+                    return Double.longBitsToDouble(readFixed(8));
+                case BYTES: {
+                    int len = length();
+                    byte[] bytes = new byte[len];
+                    System.arraycopy(buf, pos, bytes, 0, len);
+                    pos += len;
+                    return bytes;
+                }
+                case LIST: {
+                    int size = (int) varLong();
+                    // 每个元素至少一个字节，防止错误的长度导致分配过大的数组
+                    if (size < 0 || size > end - pos) {
+                        throw new IOException("Malformed list size " + size);
+                    }
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(read());
+                    }
+                    return list;
+                }
+                default:
+                    throw new IOException("Unknown value tag " + tag);
+            }
+        }
+
+        private int length() throws IOException {
+            long len = varLong();
+            if (len < 0 || len > end - pos) {
+                throw new IOException("Malformed length " + len);
+            }
+            return (int) len;
+        }
+
+        private int readShort() {
+            return (int) readFixed(2);
+        }
+
+        private long readFixed(int n) {
+            long v = 0;
+            for (int i = 0; i < n; i++) {
+                v = (v << 8) | (next() & 0xFF);
+            }
+            return v;
+        }
+
+        private long varLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = next();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private static long unzigzag(long v) {
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ package cn.elmi.components.cache.utils;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.stereotype.Component;
 
 /**
@@ -32,11 +33,17 @@ public class ApplicationContextUtil implements ApplicationContextAware {
 
     @Override
     public void setApplicationContext(ApplicationContext arg0) throws BeansException {
-        if (ApplicationContextUtil.applicationContext == null) {
+        // 已关闭的上下文不再可用，由新的上下文替换
+        if (ApplicationContextUtil.applicationContext == null || !isActive(ApplicationContextUtil.applicationContext)) {
             ApplicationContextUtil.applicationContext = arg0;
         }
     }
 
+    private static boolean isActive(ApplicationContext context) {
+        return !(context instanceof ConfigurableApplicationContext)
+                || ((ConfigurableApplicationContext) context).isActive();
+    }
+
     public static ApplicationContext getApplicationContext() {
         return applicationContext;
     }
@@ -18,15 +18,26 @@ package cn.elmi.components.cache.utils;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.CacheException;
 import cn.elmi.components.cache.CacheProvider;
+import cn.elmi.components.cache.CacheRegionListener;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.core.props.CacheProp.PolicyProp;
 
 /**
  * @author Arthur
@@ -44,8 +55,56 @@ public final class CacheManager implements Closeable {
     @Resource(name = "guavaCache")
     private CacheProvider guavaCacheProvider;
 
+    @Resource(name = "caffeine")
+    private CacheProvider caffeineProvider;
+
+    @Resource(name = "none")
+    private CacheProvider nullProvider;
+
+    @Autowired
+    private CacheProp cacheProp;
+
+    private final Map<String, CacheProvider> providers = new HashMap<>();
+
+    /**
+     * region 解析后的各级缓存，下标 0 为一级缓存，1 为二级缓存
+     */
+    private final ConcurrentHashMap<String, Cache<?, ?>[]> tiers = new ConcurrentHashMap<>();
+
+    private final Set<CacheProvider> used = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        for (CacheProvider provider : new CacheProvider[] { guavaCacheProvider, caffeineProvider, ehcacheProvider,
+                nullProvider }) {
+            providers.put(provider.name(), provider);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     public <K, V> Cache<K, V> getCache(int level, String region) {
-        return ((level == 1) ? guavaCacheProvider : redisProvider).provide(region);
+        return (Cache<K, V>) tiers.computeIfAbsent(region, this::resolve)[level == 1 ? 0 : 1];
+    }
+
+    /**
+     * 按 region 的策略确定一级缓存的实现以及是否启用二级缓存
+     */
+    private Cache<?, ?>[] resolve(String region) {
+        PolicyProp policy = cacheProp.getPolicy(region);
+        String name = policy.getL1() == null ? cacheProp.getL1() : policy.getL1();
+        CacheProvider l1 = providers.get(name);
+        if (l1 == null) {
+            throw new CacheException("Unknown l1 cache provider " + name + " of region " + region);
+        }
+        CacheProvider l2 = policy.isL2() ? redisProvider : nullProvider;
+        used.add(l1);
+        used.add(l2);
+        Cache<?, ?>[] caches = new Cache<?, ?>[] { l1.provide(region), l2.provide(region) };
+        if (l1 != nullProvider) {
+            ApplicationContextUtil.getApplicationContext().getBeansOfType(CacheRegionListener.class).values()
+                    .forEach(listener -> listener.notifyRegionCreated(region));
+        }
+        return caches;
     }
 
     /**
@@ -69,6 +128,27 @@ public final class CacheManager implements Closeable {
         return null;
     }
 
+    /**
+     * 批量获取缓存中的数据
+     * 
+     * @param level
+     *            Cache Level: L1 and L2
+     * @param region
+     *            Cache region name
+     * @param keys
+     *            Cache keys
+     * @return Cached objects, missing keys are absent
+     */
+    public <K, V> Map<K, V> getAll(int level, String region, Collection<K> keys) {
+        if (region != null && keys != null && keys.size() > 0) {
+            Cache<K, V> cache = getCache(level, region);
+            if (cache != null) {
+                return cache.getValues(keys);
+            }
+        }
+        return new HashMap<>();
+    }
+
     /**
      * 写入缓存
      * 
@@ -90,6 +170,69 @@ public final class CacheManager implements Closeable {
         }
     }
 
+    /**
+     * 写入缓存并指定过期时间
+     * 
+     * @param level
+     *            Cache Level: L1 and L2
+     * @param region
+     *            Cache region name
+     * @param key
+     *            Cache key
+     * @param value
+     *            Cache value
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public <K, V> void set(int level, String region, K key, V value, long ttl) {
+        if (region != null && key != null && value != null) {
+            Cache<K, V> cache = getCache(level, region);
+            if (cache != null) {
+                cache.put(key, value, ttl);
+            }
+        }
+    }
+
+    /**
+     * 批量写入缓存
+     * 
+     * @param level
+     *            Cache Level: L1 and L2
+     * @param region
+     *            Cache region name
+     * @param values
+     *            Cache keys and values
+     */
+    public <K, V> void putAll(int level, String region, Map<K, V> values) {
+        if (region != null && values != null && values.size() > 0) {
+            Cache<K, V> cache = getCache(level, region);
+            if (cache != null) {
+                cache.putAll(values);
+            }
+        }
+    }
+
+    /**
+     * 批量写入缓存并指定过期时间
+     * 
+     * @param level
+     *            Cache Level: L1 and L2
+     * @param region
+     *            Cache region name
+     * @param values
+     *            Cache keys and values
+     * @param ttl
+     *            time to live in milliseconds
+     */
+    public <K, V> void putAll(int level, String region, Map<K, V> values, long ttl) {
+        if (region != null && values != null && values.size() > 0) {
+            Cache<K, V> cache = getCache(level, region);
+            if (cache != null) {
+                cache.putAll(values, ttl);
+            }
+        }
+    }
+
     /**
      * 清除缓存中的某个数据
      * 
@@ -157,10 +300,18 @@ public final class CacheManager implements Closeable {
         return (cache != null) ? cache.keys() : null;
     }
 
+    /**
+     * 本节点已创建的 region
+     */
+    public Set<String> regions() {
+        return Collections.unmodifiableSet(tiers.keySet());
+    }
+
     @Override
     public void close() throws IOException {
-        redisProvider.close();
-        guavaCacheProvider.close();
+        for (CacheProvider provider : used) {
+            provider.close();
+        }
     }
 
 }
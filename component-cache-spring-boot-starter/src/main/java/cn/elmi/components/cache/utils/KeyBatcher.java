@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按 region 合并 key，每隔 window 毫秒或累计 maxKeys 个 key 时批量交给 sink 处理<br/>
+ * 同一窗口内清除 region 时丢弃该 region 之前积累的 key，刷新时先处理清除再处理 key
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class KeyBatcher implements Closeable {
+
+    private final BiConsumer<String, List<Object>> sink;
+    private final Consumer<String> clearSink;
+    private final int maxKeys;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private Map<String, Set<Object>> pending = new HashMap<>();
+    private Set<String> clears = new HashSet<>();
+    private int size;
+    private long firstQueuedAt;
+
+    private final LongAdder flushes = new LongAdder();
+    private final AtomicLong lastFlushLatency = new AtomicLong();
+    private final AtomicLong maxFlushLatency = new AtomicLong();
+
+    /**
+     * @param name
+     *            flush thread name
+     * @param sink
+     *            handles the keys of one region
+     * @param window
+     *            flush interval in milliseconds
+     * @param maxKeys
+     *            pending keys that trigger an immediate flush
+     */
+    public KeyBatcher(String name, BiConsumer<String, List<Object>> sink, long window, int maxKeys) {
+        this(name, sink, null, window, maxKeys);
+    }
+
+    /**
+     * @param clearSink
+     *            handles a cleared region, null when {@link #clear} is not used
+     */
+    public KeyBatcher(String name, BiConsumer<String, List<Object>> sink, Consumer<String> clearSink, long window,
+            int maxKeys) {
+        this.sink = sink;
+        this.clearSink = clearSink;
+        this.maxKeys = Math.max(1, maxKeys);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flush, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(String region, Object key) {
+        addAll(region, Collections.singletonList(key));
+    }
+
+    public void addAll(String region, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        boolean full;
+        synchronized (lock) {
+            mark();
+            Set<Object> set = pending.computeIfAbsent(region, r -> new LinkedHashSet<>());
+            for (Object key : keys) {
+                size += set.add(key) ? 1 : 0;
+            }
+            full = size >= maxKeys;
+        }
+        if (full) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * 清除 region，同一窗口内该 region 之前积累的 key 随之丢弃
+     */
+    public void clear(String region) {
+        synchronized (lock) {
+            mark();
+            clears.add(region);
+            Set<Object> set = pending.remove(region);
+            if (set != null) {
+                size -= set.size();
+            }
+        }
+    }
+
+    private void mark() {
+        if (firstQueuedAt == 0) {
+            firstQueuedAt = System.currentTimeMillis();
+        }
+    }
+
+    public void flush() {
+        Map<String, Set<Object>> flushing;
+        Set<String> clearing;
+        long queuedAt;
+        synchronized (lock) {
+            if (firstQueuedAt == 0) {
+                return;
+            }
+            flushing = pending;
+            clearing = clears;
+            queuedAt = firstQueuedAt;
+            pending = new HashMap<>();
+            clears = new HashSet<>();
+            size = 0;
+            firstQueuedAt = 0;
+        }
+
+        clearing.forEach(region -> {
+            try {
+                clearSink.accept(region);
+            } catch (Exception e) {
+                log.error("Flush clear of region " + region + " fail", e);
+            }
+        });
+        flushing.forEach((region, keys) -> {
+            try {
+                sink.accept(region, new ArrayList<>(keys));
+            } catch (Exception e) {
+                log.error("Flush keys of region " + region + " fail", e);
+            }
+        });
+
+        long latency = System.currentTimeMillis() - queuedAt;
+        lastFlushLatency.set(latency);
+        maxFlushLatency.accumulateAndGet(latency, Math::max);
+        flushes.increment();
+    }
+
+    /**
+     * 批量处理次数
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 最近一次批量处理中，最早入队的 key 到处理完成的毫秒数
+     */
+    public long getLastFlushLatency() {
+        return lastFlushLatency.get();
+    }
+
+    /**
+     * 最大的批量处理延迟（毫秒）
+     */
+    public long getMaxFlushLatency() {
+        return maxFlushLatency.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flush();
+    }
+
+}
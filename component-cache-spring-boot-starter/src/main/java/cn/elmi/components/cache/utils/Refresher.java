@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.utils;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.core.props.CacheProp.PolicyProp;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 提前刷新（refresh-ahead）与加载失败时返回旧值（stale-while-error）的支持<br/>
+ * 记录通过 loader 加载的值及其加载时间，超过 refreshAhead 后读取时在后台线程重新加载，
+ * 加载失败时在 staleGrace 内返回最后一次加载的值
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+@Slf4j
+public class Refresher implements Closeable {
+
+    private final CacheProp cacheProp;
+    private final ThreadPoolExecutor executor;
+
+    private final ConcurrentHashMap<String, Cache<Object, Stamp>> stamps = new ConcurrentHashMap<>();
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    public Refresher(CacheProp cacheProp) {
+        this.cacheProp = cacheProp;
+        CacheProp.RefreshProp prop = cacheProp.getRefresh();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(prop.getThreads(), prop.getThreads(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(prop.getQueue()), r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final class Stamp {
+        private final Object value;
+        private final long loadedAt;
+        /**
+         * 值在缓存中过期的时间，ttl 为 0 时即加载时间
+         */
+        private final long expireAt;
+
+        private Stamp(Object value, long ttl) {
+            this.value = value;
+            this.loadedAt = System.currentTimeMillis();
+            this.expireAt = loadedAt + Math.max(0, ttl);
+        }
+    }
+
+    /**
+     * region 是否开启了提前刷新或旧值兜底
+     */
+    public boolean isEnabled(String region) {
+        PolicyProp policy = cacheProp.getPolicy(region);
+        return policy.getRefreshAhead() > 0 || policy.getStaleGrace() > 0;
+    }
+
+    private Cache<Object, Stamp> stamps(String region) {
+        return stamps.computeIfAbsent(region, r -> {
+            PolicyProp policy = cacheProp.getPolicy(r);
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                    .maximumSize(cacheProp.getRefresh().getMaxSize());
+            // ttl 为 0 时值不会过期，加载时间必须保留到下次读取，否则恰好在 refreshAhead 时失效，永远不会触发刷新
+            if (policy.getTtl() > 0) {
+                long retention = Math.max(policy.getRefreshAhead(), policy.getTtl()) + policy.getStaleGrace();
+                builder.expireAfterWrite(retention, TimeUnit.MILLISECONDS);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * 记录新写入的值
+     */
+    public void loaded(String region, Object key, Object value) {
+        if (value != null && isEnabled(region)) {
+            stamps(region).put(key, new Stamp(value, cacheProp.getPolicy(region).getTtl()));
+        }
+    }
+
+    public void invalidate(String region, Object key) {
+        Cache<Object, Stamp> cache = stamps.get(region);
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    public void invalidateAll(String region) {
+        Cache<Object, Stamp> cache = stamps.get(region);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 值的加载时间是否已超过 refreshAhead
+     */
+    public boolean shouldRefresh(String region, Object key) {
+        long refreshAhead = cacheProp.getPolicy(region).getRefreshAhead();
+        if (refreshAhead <= 0) {
+            return false;
+        }
+        Stamp stamp = stamps(region).getIfPresent(key);
+        return stamp != null && System.currentTimeMillis() - stamp.loadedAt >= refreshAhead;
+    }
+
+    /**
+     * 在后台线程执行刷新，同一个 key 同时只有一个刷新任务，队列已满时放弃本次刷新
+     *
+     * @param flightKey
+     *            region and key
+     * @param task
+     *            reload task
+     */
+    public void refresh(Object flightKey, Runnable task) {
+        if (!refreshing.add(flightKey)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refreshes.increment();
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("Refresh cache fail, key=" + flightKey, e);
+                } finally {
+                    refreshing.remove(flightKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            refreshing.remove(flightKey);
+        }
+    }
+
+    /**
+     * 加载失败时可以返回的旧值，只在值过期后的 staleGrace 内返回
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V stale(String region, Object key) {
+        long staleGrace = cacheProp.getPolicy(region).getStaleGrace();
+        if (staleGrace <= 0) {
+            return null;
+        }
+        Stamp stamp = stamps(region).getIfPresent(key);
+        if (stamp == null || System.currentTimeMillis() > stamp.expireAt + staleGrace) {
+            return null;
+        }
+        staleServed.increment();
+        return (V) stamp.value;
+    }
+
+    /**
+     * 后台刷新次数
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    /**
+     * 因队列已满被放弃的刷新次数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 加载失败时返回旧值的次数
+     */
+    public long getStaleServed() {
+        return staleServed.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        stamps.clear();
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2018 Arthur Chan (codeyn@163.com).
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the “Software”), to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and
+ * to permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO
+ * THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT,
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package cn.elmi.components.cache.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import cn.elmi.components.cache.CacheException;
+
+/**
+ * 同一个 key 同时只允许一个加载任务执行，其余调用者等待该任务的结果
+ *
+ * @author Arthur
+ * @since 1.0
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * 执行加载任务，若相同 key 的任务正在执行则等待其结果
+     *
+     * @param key
+     *            load key
+     * @param call
+     *            loader
+     * @param timeout
+     *            max milliseconds to wait for an in-flight load
+     * @return loaded value
+     * @throws Exception
+     *             loader exception, or {@link TimeoutException} when the wait expires
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(Object key, Callable<V> call, long timeout) throws Exception {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inflight = calls.putIfAbsent(key, future);
+
+        if (inflight == null) {
+            loads.increment();
+            try {
+                V value = call.call();
+                future.complete(value);
+                return value;
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                calls.remove(key, future);
+            }
+        }
+
+        coalesced.increment();
+        try {
+            return (V) inflight.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new CacheException(cause);
+        }
+    }
+
+    /**
+     * 正在执行的加载任务数
+     */
+    public int getInflight() {
+        return calls.size();
+    }
+
+    /**
+     * 实际执行的加载次数
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * 被合并（等待其他线程结果）的加载次数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 等待超时次数
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+}
@@ -0,0 +1,119 @@
+package cn.elmi.components.cache.broadcast;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.model.Command;
+
+public class BatchingPublisherTest {
+
+    private final List<Command<?>> sent = new CopyOnWriteArrayList<>();
+
+    private BatchingPublisher publisher(long window, int maxKeys, int commandSize) {
+        sent.clear();
+        return new BatchingPublisher(sent::add, window, maxKeys, commandSize);
+    }
+
+    @Test
+    public void test_window_flush() throws Exception {
+        try (BatchingPublisher publisher = publisher(200, 1000, 100)) {
+            publisher.evict("users", 1L);
+            publisher.evict("users", Arrays.asList(2L, 1L));
+            waitFor(publisher, 1);
+
+            Assert.assertEquals(sent.size(), 1);
+            Assert.assertEquals(sent.get(0).getOperator(), Command.OPT_DELETE_KEY);
+            Assert.assertEquals(sent.get(0).getKey(), Arrays.asList(1L, 2L));
+            Assert.assertEquals(publisher.getKeys(), 2);
+        }
+    }
+
+    @Test
+    public void test_size_flush() throws Exception {
+        try (BatchingPublisher publisher = publisher(60000, 3, 100)) {
+            publisher.evict("users", 1L);
+            publisher.evict("users", 2L);
+            Thread.sleep(50);
+            Assert.assertEquals(publisher.getFlushes(), 0);
+
+            publisher.evict("orders", 3L);
+            waitFor(publisher, 1);
+            Assert.assertEquals(publisher.getPublished(), 2);
+            Assert.assertEquals(publisher.getKeys(), 3);
+        }
+    }
+
+    @Test
+    public void test_clear_supersedes_evicts() {
+        try (BatchingPublisher publisher = publisher(60000, 1000, 100)) {
+            publisher.evict("users", 1L);
+            publisher.evict("orders", 2L);
+            publisher.clear("users");
+            publisher.evict("users", 3L);
+            publisher.flush();
+
+            // 清除在前，之后的失效仍然发布，之前的失效随清除丢弃
+            Assert.assertEquals(sent.size(), 3);
+            Assert.assertEquals(sent.get(0).getOperator(), Command.OPT_CLEAR_KEY);
+            Assert.assertEquals(sent.get(0).getRegion(), "users");
+            for (Command<?> cmd : sent.subList(1, 3)) {
+                Assert.assertEquals(cmd.getOperator(), Command.OPT_DELETE_KEY);
+                Assert.assertEquals(cmd.getKey(),
+                        Collections.singletonList("users".equals(cmd.getRegion()) ? 3L : 2L));
+            }
+            Assert.assertEquals(publisher.getKeys(), 2);
+        }
+    }
+
+    @Test
+    public void test_command_size() {
+        try (BatchingPublisher publisher = publisher(60000, 1000, 2)) {
+            publisher.evict("users", Arrays.asList(1L, 2L, 3L, 4L, 5L));
+            publisher.flush();
+
+            Assert.assertEquals(sent.size(), 3);
+            Assert.assertEquals(sent.get(0).getKey(), Arrays.asList(1L, 2L));
+            Assert.assertEquals(sent.get(1).getKey(), Arrays.asList(3L, 4L));
+            Assert.assertEquals(sent.get(2).getKey(), Collections.singletonList(5L));
+            Assert.assertEquals(publisher.getKeys(), 5);
+            Assert.assertEquals(publisher.getFlushes(), 1);
+        }
+    }
+
+    @Test
+    public void test_latency_and_close() throws Exception {
+        BatchingPublisher publisher = publisher(60000, 1000, 100);
+        publisher.flush();
+        Assert.assertEquals(publisher.getFlushes(), 0);
+
+        publisher.evict("users", 1L);
+        Thread.sleep(30);
+        publisher.flush();
+        Assert.assertTrue(publisher.getLastFlushLatency() >= 30, String.valueOf(publisher.getLastFlushLatency()));
+
+        publisher.evict("users", 2L);
+        publisher.flush();
+        Assert.assertTrue(publisher.getLastFlushLatency() < 30, String.valueOf(publisher.getLastFlushLatency()));
+        Assert.assertTrue(publisher.getMaxFlushLatency() >= 30);
+
+        // 关闭时发布剩余的命令
+        publisher.clear("orders");
+        publisher.close();
+        Assert.assertEquals(sent.get(sent.size() - 1).getOperator(), Command.OPT_CLEAR_KEY);
+        Assert.assertEquals(publisher.getFlushes(), 3);
+    }
+
+    private static void waitFor(BatchingPublisher publisher, long flushes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publisher.getFlushes() < flushes) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+}
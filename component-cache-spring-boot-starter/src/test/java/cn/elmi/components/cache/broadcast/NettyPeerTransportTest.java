@@ -0,0 +1,170 @@
+package cn.elmi.components.cache.broadcast;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp.PeerProp;
+
+public class NettyPeerTransportTest {
+
+    @Test
+    public void test_broadcast() throws Exception {
+        int[] ports = { freePort(), freePort(), freePort() };
+        List<String> members = new ArrayList<>();
+        for (int port : ports) {
+            members.add("127.0.0.1:" + port);
+        }
+
+        List<NettyPeerTransport> transports = new ArrayList<>();
+        List<Queue<String>> inboxes = new ArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2 * 100);
+        for (int port : ports) {
+            PeerProp prop = new PeerProp();
+            prop.setHost("127.0.0.1");
+            prop.setPort(port);
+            prop.setMembers(members);
+            prop.setReconnectInterval(50);
+            Queue<String> inbox = new ConcurrentLinkedQueue<>();
+            NettyPeerTransport transport = new NettyPeerTransport(prop);
+            transport.start(m -> {
+                inbox.add(new String(m, StandardCharsets.UTF_8));
+                delivered.countDown();
+            }, () -> {
+            });
+            transports.add(transport);
+            inboxes.add(inbox);
+        }
+
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (transports.stream().anyMatch(t -> t.getConnectedPeers() < 2)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            for (int i = 0; i < 100; i++) {
+                transports.get(0).publish(String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+            }
+            Assert.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+            Assert.assertTrue(inboxes.get(0).isEmpty());
+            for (Queue<String> inbox : inboxes.subList(1, 3)) {
+                Assert.assertEquals(inbox.size(), 100);
+                Assert.assertEquals(inbox.peek(), "0");
+            }
+            Assert.assertEquals(transports.get(0).getSent(), 200);
+        } finally {
+            transports.forEach(NettyPeerTransport::close);
+        }
+    }
+
+    @Test
+    public void test_gap_after_reconnect() throws Exception {
+        int[] ports = { freePort(), freePort() };
+        List<String> members = Arrays.asList("127.0.0.1:" + ports[0], "127.0.0.1:" + ports[1]);
+        AtomicInteger gaps = new AtomicInteger();
+
+        PeerProp receiving = new PeerProp();
+        receiving.setHost("127.0.0.1");
+        receiving.setPort(ports[0]);
+        receiving.setMembers(Arrays.asList(members.get(0)));
+        NettyPeerTransport receiver = new NettyPeerTransport(receiving);
+        receiver.start(m -> {
+        }, gaps::incrementAndGet);
+
+        PeerProp sending = new PeerProp();
+        sending.setHost("127.0.0.1");
+        sending.setPort(ports[1]);
+        sending.setMembers(members);
+        sending.setReconnectInterval(50);
+        try {
+            NettyPeerTransport sender = new NettyPeerTransport(sending);
+            sender.start(m -> {
+            }, () -> {
+            });
+            awaitConnected(sender);
+            sender.close();
+
+            // 发送方重启后重新连接，接收方清除一级缓存
+            sender = new NettyPeerTransport(sending);
+            sender.start(m -> {
+            }, () -> {
+            });
+            awaitConnected(sender);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (gaps.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            sender.close();
+            Assert.assertEquals(gaps.get(), 1);
+        } finally {
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void test_gap_after_dropped() throws Exception {
+        int[] ports = { freePort(), freePort() };
+        List<String> members = Arrays.asList("127.0.0.1:" + ports[0], "127.0.0.1:" + ports[1]);
+        AtomicInteger gaps = new AtomicInteger();
+        AtomicInteger received = new AtomicInteger();
+
+        PeerProp sending = new PeerProp();
+        sending.setHost("127.0.0.1");
+        sending.setPort(ports[1]);
+        sending.setMembers(members);
+        sending.setReconnectInterval(50);
+        NettyPeerTransport sender = new NettyPeerTransport(sending);
+        sender.start(m -> {
+        }, () -> {
+        });
+
+        PeerProp receiving = new PeerProp();
+        receiving.setHost("127.0.0.1");
+        receiving.setPort(ports[0]);
+        receiving.setMembers(Arrays.asList(members.get(0)));
+        NettyPeerTransport receiver = new NettyPeerTransport(receiving);
+        try {
+            // 接收方还未启动，命令被丢弃
+            sender.publish("1".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(sender.getDropped(), 1);
+
+            receiver.start(m -> received.incrementAndGet(), gaps::incrementAndGet);
+            awaitConnected(sender);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (gaps.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(gaps.get(), 1);
+            Assert.assertEquals(received.get(), 0);
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    private static void awaitConnected(NettyPeerTransport transport) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transport.getConnectedPeers() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(transport.getConnectedPeers(), 1);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
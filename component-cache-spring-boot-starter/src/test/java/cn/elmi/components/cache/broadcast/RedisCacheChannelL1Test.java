@@ -0,0 +1,117 @@
+package cn.elmi.components.cache.broadcast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.l1.CaffeineCacheProvider;
+import cn.elmi.components.cache.model.Command;
+import cn.elmi.components.cache.l1.GuavaCacheProvider;
+import cn.elmi.components.cache.l1.NullCacheProvider;
+import cn.elmi.components.cache.serializer.JavaSerializer;
+import cn.elmi.components.cache.utils.ApplicationContextUtil;
+import cn.elmi.components.cache.utils.CacheManager;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 只使用一级缓存，广播交给不连接 redis 的 transport
+ */
+public class RedisCacheChannelL1Test {
+
+    private static final String REGION = "getAll";
+
+    private AnnotationConfigApplicationContext context;
+    private RedisCacheChannel channel;
+
+    @BeforeClass
+    public void setup() {
+        CacheProp cacheProp = new CacheProp();
+        cacheProp.setRegions(Collections.singletonMap("default", "maximumSize=100"));
+        // 收到的命令在调用线程上执行
+        cacheProp.getChannel().getDispatch().setThreads(0);
+        channel = new RedisCacheChannel();
+
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("cacheProp", cacheProp);
+        context.getBeanFactory().registerSingleton("jedisPool", new JedisPool("localhost"));
+        context.getBeanFactory().registerSingleton("ehcache", new NullCacheProvider());
+        context.getBeanFactory().registerSingleton("redis", new NullCacheProvider());
+        context.getBeanFactory().registerSingleton("serializer", new JavaSerializer());
+        context.getBeanFactory().registerSingleton("transport", new CommandTransport() {
+            @Override
+            public void publish(byte[] message) {
+            }
+
+            @Override
+            public void start(Consumer<byte[]> receiver, Runnable onGap) {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        context.getBeanFactory().registerSingleton("cacheChannel", channel);
+        context.register(ApplicationContextUtil.class, GuavaCacheProvider.class, CaffeineCacheProvider.class,
+                NullCacheProvider.class, CacheManager.class);
+        context.refresh();
+        context.getAutowireCapableBeanFactory().autowireBean(channel);
+        channel.init();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        channel.close();
+        context.close();
+    }
+
+    @Test
+    public void test_null_and_duplicate_keys() {
+        channel.put(REGION, "a", "1");
+        channel.put(REGION, "b", "2");
+
+        Map<String, String> values = channel.getAll(REGION, Arrays.asList("b", null, "a", "b", "c", null));
+        Assert.assertEquals(new ArrayList<>(values.keySet()), Arrays.asList("b", "a"));
+        Assert.assertEquals(values.get("a"), "1");
+    }
+
+    @Test
+    public void test_loader_gets_distinct_misses() {
+        List<Collection<String>> calls = new ArrayList<>();
+        Map<String, String> values = channel.getAll(REGION + "-load", Arrays.asList("x", null, "y", "x"), misses -> {
+            calls.add(new ArrayList<>(misses));
+            Map<String, String> loaded = new HashMap<>();
+            misses.forEach(k -> loaded.put(k, k.toUpperCase()));
+            return loaded;
+        });
+        Assert.assertEquals(calls, Collections.singletonList(Arrays.asList("x", "y")));
+        Assert.assertEquals(new ArrayList<>(values.values()), Arrays.asList("X", "Y"));
+    }
+
+    @Test
+    public void test_legacy_evict_without_version() {
+        channel.put(REGION, "legacy", "1");
+
+        // 旧版本节点的命令：[src 4][operator 1][region 长度 2][region][key 长度 4][key]，没有版本
+        byte[] buffers = new Command<>(Command.OPT_DELETE_KEY, REGION, "legacy").toBuffers();
+        byte[] old = Arrays.copyOf(buffers, buffers.length - 8);
+        old[0] = 0x7F;
+        channel.onMessage(RedisCacheChannel.CHANNEL_BYTES,
+                new String(old, StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertNull(channel.get(REGION, "legacy").getValue());
+    }
+
+}
@@ -0,0 +1,125 @@
+package cn.elmi.components.cache.broadcast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp.StreamProp;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+
+/**
+ * 需要本地 redis-server（5.0 以上），地址可以通过 -Dredis.uri 指定，连接失败时跳过
+ */
+public class RedisStreamTransportTest {
+
+    private static final String URI = System.getProperty("redis.uri", "redis://localhost:6379");
+
+    private StreamProp prop;
+
+    @BeforeMethod
+    public void setUp() {
+        RedisClient client = RedisClient.create(URI);
+        try (StatefulRedisConnection<String, String> conn = client.connect()) {
+            conn.sync().ping();
+        } catch (Exception e) {
+            throw new SkipException("redis-server is not available at " + URI);
+        } finally {
+            client.shutdown();
+        }
+        prop = new StreamProp();
+        prop.setKey("cache_stream_test_" + System.nanoTime());
+        prop.setBlock(100);
+        prop.setRetryInterval(100);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        if (prop == null) {
+            return;
+        }
+        RedisClient client = RedisClient.create(URI);
+        try (StatefulRedisConnection<String, String> conn = client.connect()) {
+            conn.sync().del(prop.getKey());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private RedisStreamTransport transport() {
+        return new RedisStreamTransport(RedisClient.create(URI), prop);
+    }
+
+    @Test
+    public void test_replay() throws Exception {
+        RedisStreamTransport publisher = transport();
+        RedisStreamTransport first = transport();
+        CountDownLatch received = new CountDownLatch(1);
+        first.start(m -> received.countDown(), () -> Assert.fail("unexpected gap"));
+        while (first.getLastId() == null) {
+            Thread.sleep(10);
+        }
+        publisher.publish(bytes("0"));
+        Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+        String lastId = first.getLastId();
+        first.close();
+
+        // 离线期间发布的命令在重连后补发
+        for (int i = 1; i <= 3; i++) {
+            publisher.publish(bytes(String.valueOf(i)));
+        }
+        List<String> messages = new CopyOnWriteArrayList<>();
+        RedisStreamTransport second = transport();
+        second.resumeFrom(lastId);
+        second.start(m -> messages.add(new String(m, StandardCharsets.UTF_8)), () -> Assert.fail("unexpected gap"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (messages.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        second.close();
+        publisher.close();
+
+        Assert.assertEquals(messages.toString(), "[1, 2, 3]");
+    }
+
+    @Test
+    public void test_gap() throws Exception {
+        prop.setMaxLen(10);
+        RedisStreamTransport publisher = transport();
+        publisher.publish(bytes("0"));
+        RedisStreamTransport first = transport();
+        first.resumeFrom("0-0");
+        CountDownLatch received = new CountDownLatch(1);
+        first.start(m -> received.countDown(), () -> {
+        });
+        Assert.assertTrue(received.await(5, TimeUnit.SECONDS));
+        String lastId = first.getLastId();
+        first.close();
+
+        // 近似裁剪按节点删除，写入足够多的命令保证 lastId 被裁剪
+        for (int i = 0; i < 2000; i++) {
+            publisher.publish(bytes(String.valueOf(i)));
+        }
+        CountDownLatch gap = new CountDownLatch(1);
+        RedisStreamTransport second = transport();
+        second.resumeFrom(lastId);
+        second.start(m -> {
+        }, gap::countDown);
+        Assert.assertTrue(gap.await(5, TimeUnit.SECONDS));
+        second.close();
+        publisher.close();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,59 @@
+package cn.elmi.components.cache.broadcast;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class StripedDispatcherTest {
+
+    @Test
+    public void test_order() throws Exception {
+        StripedDispatcher dispatcher = new StripedDispatcher(4, 1000, r -> Assert.fail("unexpected overflow"));
+        List<Integer> applied = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < 500; i++) {
+            int seq = i;
+            dispatcher.dispatch("users", () -> applied.add(seq));
+        }
+        dispatcher.dispatch("users", done::countDown);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        dispatcher.close();
+
+        for (int i = 0; i < applied.size(); i++) {
+            Assert.assertEquals(applied.get(i).intValue(), i);
+        }
+        Assert.assertEquals(applied.size(), 500);
+    }
+
+    @Test
+    public void test_overflow() throws Exception {
+        List<String> cleared = new CopyOnWriteArrayList<>();
+        StripedDispatcher dispatcher = new StripedDispatcher(1, 1, cleared::add);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatch("users", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.dispatch("users", () -> {
+        });
+        dispatcher.dispatch("orders", () -> {
+        });
+        release.countDown();
+        dispatcher.close();
+
+        Assert.assertEquals(cleared.toString(), "[orders]");
+        Assert.assertEquals(dispatcher.getOverflows(), 1);
+        Assert.assertEquals(dispatcher.getDispatched(), 2);
+    }
+
+}
@@ -0,0 +1,56 @@
+package cn.elmi.components.cache.l1;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.Cache;
+import cn.elmi.components.cache.CacheExpiredListener;
+import cn.elmi.components.cache.CacheProvider;
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.utils.ApplicationContextUtil;
+
+/**
+ * guava 与 caffeine 使用同一份 region 配置
+ */
+public class CacheProviderSpecTest {
+
+    @Test
+    public void test_same_spec() {
+        Map<String, String> regions = new HashMap<>();
+        regions.put("default", "maximumSize=100");
+        regions.put("stats", "maximumSize=100,recordStats");
+        regions.put("concurrency", "concurrencyLevel=4, maximumSize=100, expireAfterWrite=10m");
+        CacheProp cacheProp = new CacheProp();
+        cacheProp.setRegions(regions);
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getBeanFactory().registerSingleton("cacheProp", cacheProp);
+            context.getBeanFactory().registerSingleton("listener", new CacheExpiredListener() {
+                @Override
+                public <K> void notifyElementExpired(String region, K key) {
+                }
+            });
+            context.register(ApplicationContextUtil.class, GuavaCacheProvider.class, CaffeineCacheProvider.class);
+            context.refresh();
+
+            for (CacheProvider provider : new CacheProvider[] { context.getBean(GuavaCacheProvider.class),
+                    context.getBean(CaffeineCacheProvider.class) }) {
+                for (String region : new String[] { "default", "stats", "concurrency" }) {
+                    Cache<String, String> cache = provider.provide(region);
+                    cache.put("k", "v");
+                    Assert.assertEquals(cache.getValue("k"), "v", provider.name() + ":" + region);
+                }
+            }
+        }
+
+        Assert.assertEquals(CaffeineCacheProvider.spec("concurrencyLevel=4, maximumSize=100, expireAfterWrite=10m"),
+                "maximumSize=100,expireAfterWrite=10m");
+        Assert.assertEquals(CaffeineCacheProvider.spec("maximumSize=100,refreshInterval=1m"),
+                "maximumSize=100,refreshAfterWrite=1m");
+    }
+
+}
@@ -0,0 +1,84 @@
+package cn.elmi.components.cache.l2;
+
+import java.util.Date;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.serializer.JavaSerializer;
+
+public class KeyCodecTest {
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void test_string_format_unchanged() {
+        KeyCodec codec = new KeyCodec("users", KeyCodec.STRING, 0);
+        Assert.assertEquals(codec.encode(-1, 1001L), "users:I:1001".getBytes());
+        Assert.assertEquals(codec.encode(-1, "张三"), "users:S:张三".getBytes());
+        Assert.assertEquals(codec.encode(3, "a"), "users:3:S:a".getBytes());
+        Assert.assertEquals(codec.encode(4, "a"), "users:4:S:a".getBytes());
+        Assert.assertFalse(codec.isHashed(new Date(0)));
+    }
+
+    @Test
+    public void test_binary_format() {
+        KeyCodec codec = new KeyCodec("users", KeyCodec.BINARY, 16);
+        byte[] key = codec.encode(-1, 1001L);
+        Assert.assertEquals(key.length, "users:L".length() + 8);
+        Assert.assertEquals(codec.encode(-1, 1001), key);
+        Assert.assertEquals(codec.encode(2, "a"), "users:2:Sa".getBytes());
+
+        String long1 = repeat('a', 100);
+        String long2 = repeat('a', 99) + "b";
+        Assert.assertTrue(codec.isHashed(long1));
+        Assert.assertEquals(codec.encode(-1, long1).length, "users:T".length() + 16);
+        Assert.assertNotEquals(codec.encode(-1, long1), codec.encode(-1, long2));
+        Assert.assertEquals(codec.encode(-1, long1), codec.encode(-1, new String(long1)));
+
+        // 对象 key 总是保存哈希值，与相同文本的字符串 key 不冲突
+        Assert.assertTrue(codec.isHashed(new Date(0)));
+        Assert.assertNotEquals(codec.encode(-1, new Date(0)), codec.encode(-1, new Date(0).toString()));
+    }
+
+    @Test
+    public void test_decode() {
+        KeyCodec string = new KeyCodec("users", KeyCodec.STRING, 0);
+        Assert.assertEquals(string.decode(-1, string.encode(-1, 1001L)), "1001");
+        Assert.assertEquals(string.decode(7, string.encode(7, "a:b")), "a:b");
+
+        KeyCodec binary = new KeyCodec("users", KeyCodec.BINARY, 16);
+        Assert.assertEquals(binary.decode(-1, binary.encode(-1, 1001L)), "1001");
+        Assert.assertEquals(binary.decode(-1, binary.encode(-1, -1)), "-1");
+        Assert.assertEquals(binary.decode(-1, binary.encode(-1, 1.5d)), "1.5");
+        Assert.assertEquals(binary.decode(12, binary.encode(12, "张三")), "张三");
+
+        // 以哈希值保存的 key 返回哈希值
+        String hashed = binary.decode(-1, binary.encode(-1, repeat('a', 100)));
+        Assert.assertTrue(hashed.matches("#[0-9a-f]{32}"), hashed);
+        Assert.assertNotEquals(binary.decode(-1, binary.encode(-1, new Date(0))), hashed);
+    }
+
+    @Test
+    public void test_verify_keys() throws Exception {
+        RedisCache<Object, String> cache = new RedisCache<>(null, new JavaSerializer(), "users");
+        cache.setKeyCodec(new KeyCodec("users", KeyCodec.BINARY, 4));
+        cache.setVerifyKeys(true);
+
+        byte[] bytes = cache.encode("long key", "value");
+        Assert.assertEquals(cache.decode("long key", bytes), "value");
+        Assert.assertNull(cache.decode("other key", bytes));
+        Assert.assertEquals(cache.getCollisions(), 1);
+
+        // 没有以哈希值保存的 key 不写入校验信息
+        Assert.assertEquals(cache.decode(1001L, cache.encode(1001L, "value")), "value");
+        Assert.assertEquals(cache.encode("k", "value"), new JavaSerializer().serialize("value"));
+    }
+
+}
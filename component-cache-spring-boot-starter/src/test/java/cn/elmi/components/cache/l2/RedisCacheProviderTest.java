@@ -0,0 +1,50 @@
+package cn.elmi.components.cache.l2;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.core.props.CacheProp.PolicyProp;
+import cn.elmi.components.cache.serializer.JavaSerializer;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * region 的 ttl 配置，不需要 redis
+ */
+public class RedisCacheProviderTest {
+
+    private static PolicyProp policy(long ttl, long ttlJitter) {
+        PolicyProp policy = new PolicyProp();
+        policy.setTtl(ttl);
+        policy.setTtlJitter(ttlJitter);
+        return policy;
+    }
+
+    @Test
+    public void test_ttl() {
+        CacheProp cacheProp = new CacheProp();
+        cacheProp.getPolicies().put("default", policy(3600000, 60000));
+        cacheProp.getPolicies().put("orders", policy(1000, 0));
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getBeanFactory().registerSingleton("cacheProp", cacheProp);
+            context.getBeanFactory().registerSingleton("jedisPool", new JedisPool("localhost"));
+            context.getBeanFactory().registerSingleton("serializer", new JavaSerializer());
+            context.register(RedisCacheProvider.class);
+            context.refresh();
+            RedisCacheProvider provider = context.getBean(RedisCacheProvider.class);
+
+            RedisCache<String, String> users = (RedisCache<String, String>) provider.<String, String> provide("users");
+            Assert.assertEquals(users.getTtl(), 3600000);
+            for (int i = 0; i < 100; i++) {
+                long expiry = users.expiry();
+                Assert.assertTrue(expiry >= 3600000 && expiry <= 3660000, String.valueOf(expiry));
+            }
+
+            RedisCache<String, String> orders = (RedisCache<String, String>) provider.<String, String> provide("orders");
+            Assert.assertEquals(orders.expiry(), 1000);
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package cn.elmi.components.cache.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.serializer.JavaSerializer;
+
+public class CommandTest {
+
+    @BeforeClass
+    public void setUp() {
+        Command.setSerializer(new JavaSerializer());
+    }
+
+    @Test
+    public void test_binary() {
+        Command<List<String>> cmd = new Command<>(Command.OPT_DELETE_KEY, "区域", Arrays.asList("a", "b"));
+        byte[] message = cmd.toBinary();
+        Assert.assertEquals(message[0], Command.MAGIC);
+
+        Command<List<String>> parsed = Command.decode(message);
+        Assert.assertNotNull(parsed);
+        Assert.assertTrue(parsed.isLocalCommand());
+        Assert.assertEquals(parsed.getOperator(), Command.OPT_DELETE_KEY);
+        Assert.assertEquals(parsed.getRegion(), "区域");
+        Assert.assertEquals(parsed.getKey(), Arrays.asList("a", "b"));
+        Assert.assertEquals(parsed.getVersion(), cmd.getVersion());
+    }
+
+    @Test
+    public void test_clear_without_key() {
+        Command<String> parsed = Command.decode(new Command<String>(Command.OPT_CLEAR_KEY, "users").toBinary());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(parsed.getOperator(), Command.OPT_CLEAR_KEY);
+        Assert.assertNull(parsed.getKey());
+    }
+
+    @Test
+    public void test_legacy() {
+        Command<String> cmd = new Command<>(Command.OPT_DELETE_KEY, "users", "1001");
+        // 旧版本节点以 ISO-8859-1 字符串发布，jedis 按 UTF-8 编码
+        byte[] message = new String(cmd.toBuffers(), StandardCharsets.ISO_8859_1).getBytes(StandardCharsets.UTF_8);
+
+        Command<String> parsed = Command.decode(message);
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(parsed.getRegion(), "users");
+        Assert.assertEquals(parsed.getKey(), "1001");
+        Assert.assertEquals(parsed.getVersion(), cmd.getVersion());
+    }
+
+    @Test
+    public void test_malformed() {
+        byte[] message = new Command<String>(Command.OPT_DELETE_KEY, "users", "1001").toBinary();
+        Assert.assertNull(Command.decode(Arrays.copyOf(message, message.length - 1)));
+        Assert.assertNull(Command.decode(Arrays.copyOf(message, message.length + 1)));
+        Assert.assertNull(Command.decode(Arrays.copyOf(message, 10)));
+
+        message[1] = 0x7F;
+        Assert.assertNull(Command.decode(message));
+    }
+
+}
@@ -0,0 +1,67 @@
+package cn.elmi.components.cache.serializer;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+
+public class CompressingSerializerTest {
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append("cached value ").append(sb.length() % 97).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void test_round_trip() throws Exception {
+        JavaSerializer java = new JavaSerializer();
+        for (String algorithm : new String[] { CompressingSerializer.SNAPPY, CompressingSerializer.DEFLATE }) {
+            CompressingSerializer serializer = new CompressingSerializer(java, algorithm, 1024);
+            String large = text(64 * 1024);
+            byte[] bytes = serializer.serialize(large);
+            Assert.assertTrue(bytes.length < large.length() / 2, algorithm);
+            Assert.assertEquals(serializer.deserialize(bytes), large);
+
+            Assert.assertEquals(serializer.deserialize(serializer.serialize("small")), "small");
+            Assert.assertEquals(serializer.getCompressed(), 1);
+            Assert.assertEquals(serializer.getSkipped(), 1);
+            Assert.assertTrue(serializer.getRatio() < 0.5);
+        }
+    }
+
+    @Test
+    public void test_incompressible_and_legacy() throws Exception {
+        JavaSerializer java = new JavaSerializer();
+        CompressingSerializer serializer = new CompressingSerializer(java, CompressingSerializer.DEFLATE, 16);
+        byte[] random = new byte[8192];
+        new Random(1).nextBytes(random);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(random)), random);
+        Assert.assertEquals(serializer.getCompressed(), 0);
+
+        // 开启压缩前写入的值
+        Assert.assertEquals(serializer.deserialize(java.serialize("legacy")), "legacy");
+    }
+
+    @Test
+    public void test_buffer_output() throws Exception {
+        Serializer[] serializers = { new JavaSerializer(), new FstSerializer(), new KryoSerializer(new CacheProp.KryoProp()),
+                new CompressingSerializer(new FstSerializer(), CompressingSerializer.SNAPPY, 1024) };
+        String large = text(16 * 1024);
+        for (Serializer serializer : serializers) {
+            BufferOutput out = new BufferOutput(16);
+            out.writeInt(0xCAFE);
+            int from = out.size();
+            serializer.serialize(large, out);
+            int length = out.size() - from;
+            Assert.assertEquals(serializer.deserialize(out.array(), from, length), large);
+            Assert.assertEquals(serializer.deserialize(out.toByteArray(), from, length), large);
+            Assert.assertEquals(serializer.deserialize(serializer.serialize(large)), large);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package cn.elmi.components.cache.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.Person;
+import de.ruedigermoeller.serialization.FSTObjectOutput;
+
+public class FstSerializerTest {
+
+    @Test
+    public void test_reuse() throws Exception {
+        FstSerializer serializer = new FstSerializer(Arrays.asList(Person.class.getName()));
+        for (int i = 0; i < 3; i++) {
+            Person p = new Person();
+            p.setAge(i);
+            List<Person> shared = new ArrayList<>(Arrays.asList(p, p));
+
+            Map<String, Object> value = new HashMap<>();
+            value.put("people", shared);
+            value.put("key", "v" + i);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> copy = (Map<String, Object>) serializer.deserialize(serializer.serialize(value));
+            Assert.assertEquals(copy, value);
+
+            List<?> people = (List<?>) copy.get("people");
+            Assert.assertSame(people.get(0), people.get(1));
+        }
+        Assert.assertEquals(serializer.deserialize(serializer.serialize("s")), "s");
+    }
+
+    @Test
+    public void test_compatible() throws Exception {
+        // 未注册类时与原来每次新建流的实现格式一致
+        FstSerializer serializer = new FstSerializer();
+        Person p = new Person();
+        byte[] bytes = serializer.serialize(p);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FSTObjectOutput fout = new FSTObjectOutput(out);
+        fout.writeObject(p);
+        fout.close();
+        Assert.assertEquals(serializer.deserialize(out.toByteArray()), p);
+        Assert.assertEquals(bytes, out.toByteArray());
+    }
+
+}
@@ -0,0 +1,46 @@
+package cn.elmi.components.cache.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.Person;
+import cn.elmi.components.cache.core.props.CacheProp.KryoProp;
+
+public class KryoSerializerTest {
+
+    @Test
+    public void test_round_trip() throws Exception {
+        KryoSerializer serializer = new KryoSerializer(new KryoProp());
+        Person p = new Person();
+        p.setName("kryo");
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("person", p);
+        value.put("list", new ArrayList<>(Arrays.asList(1, 2L, "3")));
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(value)), value);
+        Assert.assertNull(serializer.deserialize(serializer.serialize(null)));
+    }
+
+    @Test
+    public void test_registration() throws Exception {
+        KryoProp prop = new KryoProp();
+        prop.setRegistrationRequired(true);
+        prop.setClasses(Arrays.asList(Person.class.getName()));
+        KryoSerializer serializer = new KryoSerializer(prop);
+
+        Person p = new Person();
+        byte[] registered = serializer.serialize(p);
+        Assert.assertEquals(serializer.deserialize(registered), p);
+        Assert.assertTrue(registered.length < new KryoSerializer(new KryoProp()).serialize(p).length);
+
+        // 未注册的类使用 java 序列化
+        ArrayList<Person> list = new ArrayList<>(Arrays.asList(p));
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(list)), list);
+    }
+
+}
@@ -0,0 +1,56 @@
+package cn.elmi.components.cache.serializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TaggedSerializerTest {
+
+    private final JavaSerializer java = new JavaSerializer();
+    private final TaggedSerializer serializer = new TaggedSerializer(java);
+
+    @Test
+    public void test_round_trip() throws Exception {
+        Object[] values = { null, "", "user:1001", "区域", Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE, Integer.MIN_VALUE, 42,
+                (short) -7, (byte) 3, true, false, 'x', 1.5f, Double.NaN, -0.0d, new ArrayList<>(Arrays.asList(1L, "a", null)) };
+        for (Object value : values) {
+            Assert.assertEquals(serializer.deserialize(serializer.serialize(value)), value, String.valueOf(value));
+        }
+        byte[] bytes = { 1, 2, 3 };
+        Assert.assertEquals((byte[]) serializer.deserialize(serializer.serialize(bytes)), bytes);
+    }
+
+    @Test
+    public void test_compact() throws Exception {
+        Assert.assertEquals(serializer.serialize(1001L).length, 4);
+        Assert.assertEquals(serializer.serialize("user:1001").length, 12);
+        Assert.assertTrue(serializer.serialize(1001L).length * 10 < java.serialize(1001L).length);
+    }
+
+    @Test
+    public void test_fallback() throws Exception {
+        Date date = new Date(0);
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(date)), date);
+
+        // 其他 List 实现以及包含其他类型的 ArrayList 保持原来的类型
+        List<String> linked = new LinkedList<>(Arrays.asList("a", "b"));
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(linked)).getClass(), LinkedList.class);
+        List<Object> mixed = new ArrayList<>(Arrays.asList("a", date));
+        Assert.assertEquals(serializer.deserialize(serializer.serialize(mixed)), mixed);
+
+        // 启用前写入的值
+        Assert.assertEquals(serializer.deserialize(java.serialize("legacy")), "legacy");
+    }
+
+    @Test(expectedExceptions = java.io.IOException.class)
+    public void test_truncated() throws Exception {
+        byte[] bytes = serializer.serialize("user:1001");
+        serializer.deserialize(bytes, 0, bytes.length - 1);
+    }
+
+}
@@ -0,0 +1,141 @@
+package cn.elmi.components.cache.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import cn.elmi.components.cache.core.props.CacheProp;
+import cn.elmi.components.cache.core.props.CacheProp.PolicyProp;
+
+public class RefresherTest {
+
+    private static CacheProp cacheProp(long ttl, long refreshAhead, long staleGrace) {
+        PolicyProp policy = new PolicyProp();
+        policy.setTtl(ttl);
+        policy.setRefreshAhead(refreshAhead);
+        policy.setStaleGrace(staleGrace);
+        CacheProp cacheProp = new CacheProp();
+        cacheProp.getPolicies().put("users", policy);
+        cacheProp.getRefresh().setThreads(1);
+        cacheProp.getRefresh().setQueue(1);
+        return cacheProp;
+    }
+
+    @Test
+    public void test_refresh_dedupe() throws Exception {
+        try (Refresher refresher = new Refresher(cacheProp(0, 1, 0))) {
+            // ttl 为 0 时加载时间不会在 refreshAhead 时失效
+            refresher.loaded("users", 1L, "a");
+            Thread.sleep(5);
+            Assert.assertTrue(refresher.shouldRefresh("users", 1L));
+            Assert.assertFalse(refresher.shouldRefresh("users", 2L));
+
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger runs = new AtomicInteger();
+            Runnable task = () -> {
+                runs.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            refresher.refresh("users:1", task);
+            refresher.refresh("users:1", task);
+            refresher.refresh("users:1", task);
+            release.countDown();
+            waitFor(() -> refresher.getRefreshes() == 1);
+            Assert.assertEquals(runs.get(), 1);
+
+            // 上一次刷新结束后可以再次刷新
+            waitFor(() -> {
+                refresher.refresh("users:1", runs::incrementAndGet);
+                return runs.get() >= 2;
+            });
+            Assert.assertEquals(refresher.getRejected(), 0);
+        }
+    }
+
+    @Test
+    public void test_queue_rejection() throws Exception {
+        try (Refresher refresher = new Refresher(cacheProp(0, 1, 0))) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            refresher.refresh("users:1", () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            // 唯一的线程被占用，队列长度为 1
+            refresher.refresh("users:2", () -> {
+            });
+            refresher.refresh("users:3", () -> {
+            });
+            Assert.assertEquals(refresher.getRejected(), 1);
+            release.countDown();
+
+            // 被拒绝的 key 不会一直处于刷新中
+            AtomicInteger runs = new AtomicInteger();
+            waitFor(() -> {
+                refresher.refresh("users:3", runs::incrementAndGet);
+                return runs.get() > 0;
+            });
+        }
+    }
+
+    @Test
+    public void test_stale_grace() throws Exception {
+        try (Refresher refresher = new Refresher(cacheProp(50, 0, 100))) {
+            Assert.assertTrue(refresher.isEnabled("users"));
+            Assert.assertFalse(refresher.isEnabled("orders"));
+
+            refresher.loaded("users", 1L, "a");
+            refresher.loaded("users", 2L, "b");
+            Assert.assertEquals(refresher.<String> stale("users", 1L), "a");
+            Assert.assertFalse(refresher.shouldRefresh("users", 1L));
+
+            refresher.invalidate("users", 1L);
+            Assert.assertNull(refresher.stale("users", 1L));
+            Assert.assertEquals(refresher.<String> stale("users", 2L), "b");
+            Assert.assertEquals(refresher.getStaleServed(), 2);
+
+            // 超过 ttl + staleGrace 后不再返回旧值
+            Thread.sleep(300);
+            Assert.assertNull(refresher.stale("users", 2L));
+
+            refresher.loaded("users", 3L, "c");
+            refresher.invalidateAll("users");
+            Assert.assertNull(refresher.stale("users", 3L));
+        }
+    }
+
+    @Test
+    public void test_stale_grace_without_ttl() throws Exception {
+        try (Refresher refresher = new Refresher(cacheProp(0, 0, 100))) {
+            refresher.loaded("users", 1L, "a");
+            Assert.assertEquals(refresher.<String> stale("users", 1L), "a");
+
+            // ttl 为 0 时加载时间保留，旧值仍然只在 staleGrace 内返回
+            Thread.sleep(300);
+            Assert.assertNull(refresher.stale("users", 1L));
+            Assert.assertEquals(refresher.getStaleServed(), 1);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+}
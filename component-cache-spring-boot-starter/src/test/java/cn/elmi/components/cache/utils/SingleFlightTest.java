@@ -0,0 +1,73 @@
+package cn.elmi.components.cache.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void test_coalesce() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> flight.execute("k", () -> {
+                calls.incrementAndGet();
+                release.await();
+                return "v";
+            }, 5000)));
+        }
+        while (flight.getLoads() + flight.getCoalesced() < 8) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<String> f : futures) {
+            Assert.assertEquals(f.get(), "v");
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(calls.get(), 1);
+        Assert.assertEquals(flight.getCoalesced(), 7);
+        Assert.assertEquals(flight.getInflight(), 0);
+    }
+
+    @Test(expectedExceptions = TimeoutException.class)
+    public void test_timeout() throws Exception {
+        SingleFlight flight = new SingleFlight();
+        CountDownLatch release = new CountDownLatch(1);
+        Thread loader = new Thread(() -> {
+            try {
+                flight.execute("k", () -> {
+                    release.await();
+                    return "v";
+                }, 5000);
+            } catch (Exception ignored) {
+            }
+        });
+        loader.start();
+        while (flight.getInflight() == 0) {
+            Thread.sleep(10);
+        }
+        try {
+            flight.execute("k", () -> "v", 50);
+        } finally {
+            release.countDown();
+            loader.join();
+            Assert.assertEquals(flight.getTimeouts(), 1);
+        }
+    }
+
+}